@@ -0,0 +1,539 @@
+package io.github.hzkitty;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.hzkitty.ch_ppocr_det.DBPostProcess;
+import io.github.hzkitty.ch_ppocr_det.DetPreProcess;
+import io.github.hzkitty.ch_ppocr_det.TextDetector;
+import io.github.hzkitty.entity.FloatTensor;
+import io.github.hzkitty.entity.OcrConfig;
+import io.github.hzkitty.entity.OrtInferConfig;
+import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProviderConfig;
+import io.github.hzkitty.entity.QuantizationReport;
+import io.github.hzkitty.utils.OrtInferSession;
+import io.github.hzkitty.utils.OrtInferSessionPool;
+import io.github.hzkitty.utils.QuantizationBenchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 性能基准，在真机上运行：./gradlew :OcrLibrary:connectedAndroidTest
+ * 结果输出到 logcat，tag 为 OcrBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class OcrBenchmarkTest {
+
+    private static final String TAG = "OcrBenchmark";
+
+    // 库中自带的分类模型，无需额外准备
+    private static final String CLS_MODEL = "ch_ppocr_mobile_v2.0_cls_infer.onnx";
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @BeforeClass
+    public static void loadOpencv() {
+        OpenCVLoader.initLocal();
+    }
+
+    /**
+     * 每次推理的 Java 堆分配：旧的多维数组接口 vs 复用的输入/输出 buffer
+     */
+    @Test
+    public void allocationPerRun() throws Exception {
+        OrtInferConfig config = new OrtInferConfig();
+        config.setModelPath(CLS_MODEL);
+        long[] shape = {6, 3, 48, 192};
+        int iterations = 50;
+        try (OrtInferSession session = new OrtInferSession(context, config)) {
+            for (int round = 0; round < 2; round++) {
+                long start = allocatedBytes();
+                for (int i = 0; i < iterations; i++) {
+                    session.run(new float[6][3][48][192]);
+                }
+                long legacy = (allocatedBytes() - start) / iterations;
+
+                start = allocatedBytes();
+                for (int i = 0; i < iterations; i++) {
+                    FloatBuffer input = session.acquireInput(shape);
+                    input.put(0, i);
+                    session.runFlat(input, shape);
+                }
+                long pooled = (allocatedBytes() - start) / iterations;
+                // 第一轮包含各形状首次分配，只报告稳定后的第二轮
+                if (round == 1) {
+                    Log.i(TAG, "allocation/run legacy=" + legacy + "B pooled=" + pooled + "B");
+                    assertTrue(pooled < legacy / 10);
+                }
+            }
+        }
+    }
+
+    /**
+     * 完整 RapidOCR.run（检测 + 分类 + 识别）预热后每次调用的 Java 堆分配与 native 堆增长，固定的 600x800 合成页面
+     */
+    @Test
+    public void allocationPerOcrRun() throws Exception {
+        OcrConfig probe = new OcrConfig();
+        assumeTrue(hasAsset(probe.getDet().getModelPath()) && hasAsset(probe.getRec().getModelPath()));
+        Mat page = new Mat(800, 600, CvType.CV_8UC3, new Scalar(255, 255, 255));
+        Random random = new Random(1);
+        for (int y = 20; y < 760; y += 36) {
+            int x = 10 + random.nextInt(50);
+            Imgproc.rectangle(page, new Point(x, y), new Point(x + 100 + random.nextInt(400), y + 18), new Scalar(0, 0, 0), -1);
+        }
+        int iterations = 20;
+        try (RapidOCR ocr = RapidOCR.create(context)) {
+            for (int i = 0; i < 5; i++) {
+                ocr.run(page);
+            }
+            long nativeStart = Debug.getNativeHeapAllocatedSize();
+            long start = allocatedBytes();
+            for (int i = 0; i < iterations; i++) {
+                ocr.run(page);
+            }
+            long perRun = (allocatedBytes() - start) / iterations;
+            long nativeGrowth = Debug.getNativeHeapAllocatedSize() - nativeStart;
+            Log.i(TAG, "RapidOCR.run allocation/run=" + perRun + "B native growth over " + iterations + " runs=" + nativeGrowth + "B");
+        } finally {
+            page.release();
+        }
+    }
+
+    /**
+     * 4 个请求线程并发推理时，吞吐量随会话池大小的变化
+     */
+    @Test
+    public void throughputByPoolSize() throws Exception {
+        long[] shape = {6, 3, 48, 192};
+        int threads = 4;
+        int runsPerThread = 50;
+        for (int poolSize : new int[]{1, 2, 4}) {
+            OrtInferConfig config = new OrtInferConfig();
+            config.setModelPath(CLS_MODEL);
+            config.setSessionPoolSize(poolSize);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try (OrtInferSessionPool pool = new OrtInferSessionPool(context, config)) {
+                // 会话池在副本上设置线程数
+                assertEquals(0, config.getIntraOpNumThreads());
+                pool.warmUp(shape, 2);
+                long start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < runsPerThread; i++) {
+                            OrtInferSession session = pool.borrow();
+                            try {
+                                session.runFlat(session.acquireInput(shape), shape);
+                            } finally {
+                                pool.release(session);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Log.i(TAG, "poolSize=" + poolSize + " throughput=" + (threads * runsPerThread / seconds) + " runs/s");
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 三个默认模型的冷启动耗时：.onnx 直接加载 vs 首次转换后缓存的 .ort
+     * 检测、识别模型需放入 src/androidTest/assets，缺少时跳过
+     */
+    @Test
+    public void startupByModelFormat() throws Exception {
+        OcrConfig ocrConfig = new OcrConfig();
+        String[] models = {ocrConfig.getDet().getModelPath(), ocrConfig.getCls().getModelPath(), ocrConfig.getRec().getModelPath()};
+        File cacheDir = new File(context.getCacheDir(), "ort_benchmark");
+        int iterations = 10;
+        for (String model : models) {
+            if (!hasAsset(model)) {
+                Log.i(TAG, "startup skipped, asset not found: " + model);
+                continue;
+            }
+            // 首次加载完成 .onnx 复制与 .ort 转换，不计入
+            loadMillis(model, null);
+            loadMillis(model, cacheDir.getAbsolutePath());
+            double onnx = 0;
+            double ort = 0;
+            for (int i = 0; i < iterations; i++) {
+                onnx += loadMillis(model, null);
+                ort += loadMillis(model, cacheDir.getAbsolutePath());
+            }
+            Log.i(TAG, "startup " + model + " onnx=" + onnx / iterations + "ms ort=" + ort / iterations + "ms");
+        }
+    }
+
+    /**
+     * RapidOCR 构造耗时：三个模块顺序加载 vs 并行加载，输出各模块耗时
+     */
+    @Test
+    public void startupParallelInit() {
+        OcrConfig probe = new OcrConfig();
+        assumeTrue(hasAsset(probe.getDet().getModelPath()) && hasAsset(probe.getRec().getModelPath()));
+        for (int round = 0; round < 4; round++) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                OcrConfig config = new OcrConfig();
+                config.getGlobal().setParallelInit(parallel);
+                RapidOCR rapidOCR = new RapidOCR(context, config);
+                Map<String, Double> elapse = rapidOCR.getInitElapse();
+                rapidOCR.close();
+                // 第一轮包含模型复制到 cache 目录，不计入
+                if (round > 0) {
+                    Log.i(TAG, "init parallel=" + parallel + " " + elapse);
+                }
+            }
+        }
+    }
+
+    /**
+     * 各模块默认 CPU 与 XNNPACK 的单次推理耗时，同时输出实际生效的执行设备
+     */
+    @Test
+    public void latencyByProvider() throws Exception {
+        OcrConfig ocrConfig = new OcrConfig();
+        String[] models = {ocrConfig.getDet().getModelPath(), ocrConfig.getCls().getModelPath(), ocrConfig.getRec().getModelPath()};
+        long[][] shapes = {{1, 3, 960, 960}, {6, 3, 48, 192}, {6, 3, 48, 320}};
+        List<List<ProviderConfig>> candidates = Arrays.asList(
+                Arrays.asList(ProviderConfig.cpu()),
+                Arrays.asList(ProviderConfig.xnnpack(4), ProviderConfig.cpu()));
+        int iterations = 30;
+        for (int m = 0; m < models.length; m++) {
+            if (!hasAsset(models[m])) {
+                Log.i(TAG, "latency skipped, asset not found: " + models[m]);
+                continue;
+            }
+            long[] shape = shapes[m];
+            for (List<ProviderConfig> providers : candidates) {
+                OrtInferConfig config = new OrtInferConfig();
+                config.setModelPath(models[m]);
+                config.setProviders(providers);
+                try (OrtInferSession session = new OrtInferSession(context, config)) {
+                    for (int i = 0; i < 3; i++) {
+                        session.runFlat(session.acquireInput(shape), shape);
+                    }
+                    long start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        session.runFlat(session.acquireInput(shape), shape);
+                    }
+                    double millis = (System.nanoTime() - start) / 1e6 / iterations;
+                    Log.i(TAG, "latency " + models[m] + " requested=" + providers.get(0).getName()
+                            + " active=" + session.getProviders() + " " + millis + "ms");
+                }
+            }
+        }
+    }
+
+    /**
+     * 检测预处理：8 位图像单次遍历写入输入 buffer vs float 图像的 convertTo/subtract/divide + permute
+     * 图像尺寸已是 32 的倍数且不缩放，两条路径的输出应完全一致
+     */
+    @Test
+    public void detPreprocessFused() {
+        Mat img = new Mat(1088, 1920, CvType.CV_8UC3);
+        Core.randu(img, 0, 256);
+        Mat floatImg = new Mat();
+        img.convertTo(floatImg, CvType.CV_32FC3);
+        DetPreProcess preProcess = new DetPreProcess(1920, "max");
+        int length = 3 * 1088 * 1920;
+        FloatBuffer fused = ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        FloatBuffer unfused = ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        int iterations = 20;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                preProcess.call(img, shape -> fused);
+            }
+            double fusedMillis = (System.nanoTime() - start) / 1e6 / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                preProcess.call(floatImg, shape -> unfused);
+            }
+            double unfusedMillis = (System.nanoTime() - start) / 1e6 / iterations;
+            if (round == 1) {
+                Log.i(TAG, "det preprocess fused=" + fusedMillis + "ms unfused=" + unfusedMillis + "ms");
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            assertEquals(unfused.get(i), fused.get(i), 0f);
+        }
+        img.release();
+        floatImg.release();
+    }
+
+    /**
+     * 尺寸各异的图片流上检测耗时的波动：不补齐 vs 补齐到固定的形状档位
+     * 先检测 20 张预热，再统计 100 张的均值、标准差与 P95
+     */
+    @Test
+    public void detLatencyVarianceByBuckets() throws Exception {
+        OcrConfig probe = new OcrConfig();
+        assumeTrue(hasAsset(probe.getDet().getModelPath()));
+        int[][] buckets = {{736, 736}, {736, 1024}, {1024, 736}, {736, 1312}, {1312, 736}};
+        for (boolean bucketed : new boolean[]{false, true}) {
+            OcrConfig.DetConfig detConfig = new OcrConfig().getDet();
+            if (bucketed) {
+                detConfig.setShapeBuckets(buckets);
+            }
+            try (TextDetector detector = new TextDetector(context, detConfig)) {
+                // 同一随机种子，两种模式看到相同的尺寸序列
+                Random random = new Random(11);
+                double[] elapse = new double[100];
+                for (int i = 0; i < 120; i++) {
+                    Mat img = new Mat(500 + random.nextInt(900), 500 + random.nextInt(900), CvType.CV_8UC3,
+                            new Scalar(255, 255, 255));
+                    long start = System.nanoTime();
+                    detector.call(img);
+                    if (i >= 20) {
+                        elapse[i - 20] = (System.nanoTime() - start) / 1e6;
+                    }
+                    img.release();
+                }
+                double mean = Arrays.stream(elapse).average().orElse(0);
+                double variance = Arrays.stream(elapse).map(e -> (e - mean) * (e - mean)).sum() / elapse.length;
+                double[] sorted = elapse.clone();
+                Arrays.sort(sorted);
+                Log.i(TAG, "det bucketed=" + bucketed + " mean=" + mean + "ms sd=" + Math.sqrt(variance)
+                        + "ms p95=" + sorted[94] + "ms");
+            }
+        }
+    }
+
+    /**
+     * 16 张同尺寸为主的页面：逐张 call vs callBatch 的吞吐量，并校验两者结果一致
+     */
+    @Test
+    public void detBatchThroughput() throws Exception {
+        OcrConfig probe = new OcrConfig();
+        assumeTrue(hasAsset(probe.getDet().getModelPath()));
+        OcrConfig.DetConfig detConfig = new OcrConfig().getDet();
+        detConfig.setDetBatchNum(8);
+        List<Mat> pages = new ArrayList<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 16; i++) {
+            // 每 5 张混入一张其他尺寸
+            boolean odd = i % 5 == 4;
+            Mat page = new Mat(odd ? 700 : 1200, odd ? 900 : 800, CvType.CV_8UC3, new Scalar(255, 255, 255));
+            for (int y = 30; y < page.rows() - 40; y += 50) {
+                int x = 10 + random.nextInt(100);
+                Imgproc.rectangle(page, new Point(x, y), new Point(Math.min(page.cols() - 10, x + 50 + random.nextInt(600)), y + 15),
+                        new Scalar(0, 0, 0), -1);
+            }
+            pages.add(page);
+        }
+        try (TextDetector detector = new TextDetector(context, detConfig)) {
+            List<List<Point[]>> batch = detector.callBatch(pages).getLeft();
+            for (int i = 0; i < pages.size(); i++) {
+                List<Point[]> single = detector.call(pages.get(i)).getLeft();
+                assertEquals(single.size(), batch.get(i).size());
+            }
+            int rounds = 5;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int r = 0; r < rounds; r++) {
+                    for (Mat page : pages) {
+                        detector.call(page);
+                    }
+                }
+                double single = rounds * pages.size() / ((System.nanoTime() - start) / 1e9);
+                start = System.nanoTime();
+                for (int r = 0; r < rounds; r++) {
+                    detector.callBatch(pages);
+                }
+                double batched = rounds * pages.size() / ((System.nanoTime() - start) / 1e9);
+                if (round == 1) {
+                    Log.i(TAG, "det throughput single=" + single + " img/s batch=" + batched + " img/s");
+                }
+            }
+        } finally {
+            for (Mat page : pages) {
+                page.release();
+            }
+        }
+    }
+
+    /**
+     * 检测框评分：fast（逐框填充四边形）vs integral（积分图），合成的 2016x1504 概率图（maxSideLen 2000 对应的尺寸），
+     * 每张 141 行密排短文本、约 1800 个候选框，部分文本行倾斜 ±3°；同时比较全部候选框的分数差和以 box_thresh 判定的结果是否变化
+     */
+    @Test
+    public void integralScoring() {
+        int h = 2016;
+        int w = 1504;
+        float boxThresh = 0.6f;
+        double fastMillis = 0;
+        double integralMillis = 0;
+        double sumDiff = 0;
+        float maxDiff = 0;
+        int candidates = 0;
+        int flips = 0;
+        try (DBPostProcess fast = new DBPostProcess(0.3f, boxThresh, 5000, 1.6f, "fast", true);
+             DBPostProcess integral = new DBPostProcess(0.3f, boxThresh, 5000, 1.6f, "integral", true);
+             DBPostProcess fastAll = new DBPostProcess(0.3f, 0f, 5000, 1.6f, "fast", true);
+             DBPostProcess integralAll = new DBPostProcess(0.3f, 0f, 5000, 1.6f, "integral", true)) {
+            int pages = 6;
+            int rounds = 10;
+            for (int seed = 1; seed <= pages; seed++) {
+                FloatTensor pred = probabilityPage(seed, seed % 2 == 0 ? 0.3 : 0.1, h, w);
+                fast.call(pred, h, w);
+                integral.call(pred, h, w);
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    fast.call(pred, h, w);
+                    fastMillis += (System.nanoTime() - start) / 1e6;
+                    start = System.nanoTime();
+                    integral.call(pred, h, w);
+                    integralMillis += (System.nanoTime() - start) / 1e6;
+                }
+                // 阈值为 0 时两种模式保留相同的候选框，逐个比较分数
+                List<Float> fastScores = fastAll.call(pred, h, w).getScores();
+                List<Float> integralScores = integralAll.call(pred, h, w).getScores();
+                assertEquals(fastScores.size(), integralScores.size());
+                assertTrue(fastScores.size() >= 1000);
+                for (int i = 0; i < fastScores.size(); i++) {
+                    float diff = Math.abs(fastScores.get(i) - integralScores.get(i));
+                    sumDiff += diff;
+                    maxDiff = Math.max(maxDiff, diff);
+                    if ((fastScores.get(i) >= boxThresh) != (integralScores.get(i) >= boxThresh)) {
+                        flips++;
+                    }
+                }
+                candidates += fastScores.size();
+            }
+            Log.i(TAG, "postprocess fast=" + fastMillis / (pages * rounds) + "ms integral=" + integralMillis / (pages * rounds)
+                    + "ms candidates=" + candidates + " mean|dscore|=" + sumDiff / candidates + " max|dscore|=" + maxDiff
+                    + " flips=" + flips);
+        }
+    }
+
+    /**
+     * 真实图片上 fast 与 integral 评分的识别准确率与端到端耗时，标注目录与 QuantizationBenchmark 相同：
+     * 每张图片需有同名 .txt 标注文件，放在 /sdcard/ocr_eval，缺少目录或模型时跳过
+     */
+    @Test
+    public void integralScoringAccuracy() throws Exception {
+        OcrConfig probe = new OcrConfig();
+        File dir = new File("/sdcard/ocr_eval");
+        assumeTrue(dir.isDirectory() && hasAsset(probe.getDet().getModelPath()) && hasAsset(probe.getRec().getModelPath()));
+        List<Pair<File, String>> samples = QuantizationBenchmark.loadSamples(dir);
+        assumeTrue(!samples.isEmpty());
+        OcrConfig fastConfig = new OcrConfig();
+        fastConfig.getDet().setScoreMode("fast");
+        OcrConfig integralConfig = new OcrConfig();
+        integralConfig.getDet().setScoreMode("integral");
+        QuantizationReport report = QuantizationBenchmark.compare(context, fastConfig, integralConfig, samples, 3);
+        Log.i(TAG, "scoring fast=" + report.getBaseline() + " integral=" + report.getQuantized());
+        // 分数差在 box_thresh 附近才会改变保留的框，准确率下降不应超过 0.5%
+        assertTrue(report.getAccuracyDelta() > -0.005);
+    }
+
+    private double loadMillis(String model, String ortCacheDir) {
+        OrtInferConfig config = new OrtInferConfig();
+        config.setModelPath(model);
+        if (ortCacheDir != null) {
+            config.setOptimizedModelDir(ortCacheDir);
+            config.setOptimizedModelFormat("ort");
+        }
+        long start = System.nanoTime();
+        OrtInferSession session = new OrtInferSession(context, config);
+        double elapse = (System.nanoTime() - start) / 1e6;
+        session.close();
+        return elapse;
+    }
+
+    /**
+     * 合成概率图：每 14 像素一行、高 8 像素的短文本（部分倾斜）+ 噪声 + 模糊
+     */
+    private static FloatTensor probabilityPage(int seed, double tiltFraction, int h, int w) {
+        Random random = new Random(seed);
+        Mat map = new Mat(h, w, CvType.CV_32FC1, new Scalar(0));
+        try {
+            for (int y = 10; y < h - 20; y += 14) {
+                int x = 5 + random.nextInt(20);
+                while (x < w - 40) {
+                    int len = 30 + random.nextInt(120);
+                    if (x + len > w - 10) {
+                        break;
+                    }
+                    double angle = random.nextDouble() < tiltFraction ? (random.nextDouble() - 0.5) * 6 : 0;
+                    RotatedRect line = new RotatedRect(new Point(x + len / 2.0, y + 4), new Size(len, 8), angle);
+                    Point[] pts = new Point[4];
+                    line.points(pts);
+                    Imgproc.fillPoly(map, Collections.singletonList(new MatOfPoint(pts)), new Scalar(0.6 + 0.4 * random.nextDouble()));
+                    x += len + 10 + random.nextInt(20);
+                }
+            }
+            // 噪声用同一个 Random 生成，每次运行的概率图相同
+            float[] data = new float[h * w];
+            map.get(0, 0, data);
+            for (int i = 0; i < data.length; i++) {
+                data[i] += random.nextFloat() * 0.15f;
+            }
+            map.put(0, 0, data);
+            Imgproc.GaussianBlur(map, map, new Size(3, 3), 0);
+            map.get(0, 0, data);
+            return new FloatTensor(FloatBuffer.wrap(data), new long[]{1, 1, h, w});
+        } finally {
+            map.release();
+        }
+    }
+
+    private boolean hasAsset(String name) {
+        try {
+            context.getAssets().open(name).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 进程累计分配的字节数，测试期间无其他线程分配，近似为当前线程的分配量
+     */
+    private static long allocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.hzkitty.ch_ppocr_det;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * PolygonRasterizer 与 Imgproc.fillPoly 逐像素一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class PolygonRasterizerTest {
+
+    @BeforeClass
+    public static void loadOpencv() {
+        OpenCVLoader.initLocal();
+    }
+
+    @Test
+    public void matchesFillPoly() {
+        Random random = new Random(5);
+        PolygonRasterizer rasterizer = new PolygonRasterizer();
+        for (int it = 0; it < 5000; it++) {
+            int w = 1 + random.nextInt(it % 7 == 0 ? 400 : 60);
+            int h = 1 + random.nextInt(60);
+            int n;
+            int[] xs;
+            int[] ys;
+            if (it % 4 == 1) {
+                // 任意角度的旋转矩形，顶点按 int 截断，与检测框一致
+                n = 4;
+                xs = new int[n];
+                ys = new int[n];
+                double cx = random.nextDouble() * w, cy = random.nextDouble() * h;
+                double angle = random.nextDouble() * Math.PI;
+                double bw = random.nextDouble() * w, bh = random.nextDouble() * h / 3;
+                double cos = Math.cos(angle), sin = Math.sin(angle);
+                double[][] corners = {{-bw / 2, -bh / 2}, {bw / 2, -bh / 2}, {bw / 2, bh / 2}, {-bw / 2, bh / 2}};
+                for (int i = 0; i < n; i++) {
+                    xs[i] = (int) (cx + corners[i][0] * cos - corners[i][1] * sin);
+                    ys[i] = (int) (cy + corners[i][0] * sin + corners[i][1] * cos);
+                }
+            } else {
+                // 随机多边形，部分顶点越过掩码边界
+                n = it % 3 == 0 ? 3 + random.nextInt(20) : 4;
+                xs = new int[n];
+                ys = new int[n];
+                int spread = it % 2 == 0 ? 0 : (it % 5 == 0 ? 80 : 6);
+                for (int i = 0; i < n; i++) {
+                    xs[i] = random.nextInt(w + 2 * spread + 1) - spread;
+                    ys[i] = random.nextInt(h + 2 * spread + 1) - spread;
+                }
+            }
+
+            Point[] points = new Point[n];
+            for (int i = 0; i < n; i++) {
+                points[i] = new Point(xs[i], ys[i]);
+            }
+            Mat mat = Mat.zeros(h, w, CvType.CV_8UC1);
+            Imgproc.fillPoly(mat, Collections.singletonList(new MatOfPoint(points)), new Scalar(1));
+            byte[] expected = new byte[w * h];
+            mat.get(0, 0, expected);
+            mat.release();
+
+            byte[] actual = new byte[w * h];
+            rasterizer.fill(actual, w, h, xs, ys, n);
+            assertArrayEquals("w=" + w + " h=" + h + " xs=" + Arrays.toString(xs) + " ys=" + Arrays.toString(ys),
+                    expected, actual);
+        }
+    }
+}
@@ -11,48 +11,79 @@ import org.opencv.core.Point;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import ai.onnxruntime.OrtException;
 import io.github.hzkitty.cal_rec_boxes.CalRecBoxes;
 import io.github.hzkitty.ch_ppocr_cls.TextClassifier;
 import io.github.hzkitty.ch_ppocr_det.TextDetector;
+import io.github.hzkitty.ch_ppocr_rec.CTCLabelDecode;
 import io.github.hzkitty.ch_ppocr_rec.TextRecognizer;
 import io.github.hzkitty.entity.OcrConfig;
 import io.github.hzkitty.entity.OcrResult;
 import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProfileSummary;
 import io.github.hzkitty.entity.ParamConfig;
 import io.github.hzkitty.entity.RecResult;
 import io.github.hzkitty.entity.Triple;
 import io.github.hzkitty.entity.TupleResult;
+import io.github.hzkitty.entity.WarmupPlan;
+import io.github.hzkitty.entity.WarmupResult;
+import io.github.hzkitty.utils.CancellationToken;
+import io.github.hzkitty.utils.LazyModule;
 import io.github.hzkitty.utils.LoadImage;
 import io.github.hzkitty.utils.OpencvLoader;
+import io.github.hzkitty.utils.OrtEnvHolder;
 import io.github.hzkitty.utils.ProcessImg;
 
-public class RapidOCR {
+public class RapidOCR implements AutoCloseable {
     private final boolean printVerbose;
     private final float textScore;          // 过滤阈值
     private final int minHeight;            // 最小高度
     private final float widthHeightRatio;   // 宽高比
     private final int maxSideLen;           // 最大边长
     private final int minSideLen;           // 最小边长
+    private final int detTileSize;          // 检测分块边长，大于 0 时大图不缩小，按原分辨率分块检测
 
     private final boolean useDet;           // 是否使用检测
     private final boolean useCls;           // 是否使用分类
     private final boolean useRec;           // 是否使用识别
 
-    // OCR 三大模块和一个辅助工具
-    private final TextDetector textDet;
-    private final TextClassifier textCls;
-    private final TextRecognizer textRec;
+    // OCR 三大模块（首次使用时创建）和一个辅助工具
+    private final LazyModule<TextDetector> textDet;
+    private final LazyModule<TextClassifier> textCls;
+    private final LazyModule<TextRecognizer> textRec;
     private final CalRecBoxes calRecBoxes;
     private final LoadImage loadImage;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // 各模块初始化耗时（秒）
+    private final Map<String, Double> initElapse = new ConcurrentHashMap<>();
+    private final boolean parallelInit;
+    private final String recKeysPath;
+    // 并行初始化时预先读取的识别字符文件
+    private volatile CompletableFuture<List<String>> characterPreload;
 
+    // 并行初始化使用的最大线程数：检测、分类、识别以及字符文件读取
+    private static final int INIT_THREADS = 4;
 
     public static RapidOCR create(Context context) {
         return new RapidOCR(context);
@@ -79,24 +110,250 @@ public class RapidOCR {
         this.minHeight = globalConfig.getMinHeight();
         this.widthHeightRatio = globalConfig.getWidthHeightRatio();
 
-        // 初始化 检测/分类/识别模块
-        this.useDet = globalConfig.isUseDet();
-        this.textDet = new TextDetector(context, config.getDet());
+        // 全局线程池需在创建任何会话之前启用
+        if (globalConfig.isUseGlobalThreadPool()) {
+            OrtEnvHolder.initGlobalThreadPool(globalConfig.getIntraOpNumThreads(), globalConfig.getInterOpNumThreads());
+        }
 
+        // 初始化 检测/分类/识别模块：未启用的模块在首次使用时才加载
+        this.useDet = globalConfig.isUseDet();
         this.useCls = globalConfig.isUseCls();
-        this.textCls = new TextClassifier(context, config.getCls());
-
         this.useRec = globalConfig.isUseRec();
-        this.textRec = new TextRecognizer(context, config.getRec());
+        this.parallelInit = globalConfig.isParallelInit();
+        this.recKeysPath = config.getRec().getRecKeysPath();
+        this.textDet = new LazyModule<>("det", () -> timed("det", () -> new TextDetector(context, config.getDet())));
+        this.textCls = new LazyModule<>("cls", () -> timed("cls", () -> new TextClassifier(context, config.getCls())));
+        this.textRec = new LazyModule<>("rec", () -> timed("rec", () -> {
+            CompletableFuture<List<String>> preload = characterPreload;
+            return new TextRecognizer(context, config.getRec(), preload == null ? null : preload::join);
+        }));
+        if (!globalConfig.isLazyInit()) {
+            try {
+                preload(useDet, useCls, useRec);
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+        }
 
         this.loadImage = new LoadImage();
         this.maxSideLen = globalConfig.getMaxSideLen();
         this.minSideLen = globalConfig.getMinSideLen();
+        this.detTileSize = config.getDet().getTileSize();
 
         // 初始化文本框后处理模块
         this.calRecBoxes = new CalRecBoxes();
     }
 
+    /**
+     * 预先加载全局配置中启用的模块，避免首次识别时等待模型加载
+     */
+    public void preload() {
+        preload(useDet, useCls, useRec);
+    }
+
+    /**
+     * 预先加载指定的模块，已加载的模块直接跳过
+     */
+    public void preload(boolean det, boolean cls, boolean rec) {
+        List<LazyModule<?>> modules = new ArrayList<>();
+        if (det) {
+            modules.add(textDet);
+        }
+        if (cls) {
+            modules.add(textCls);
+        }
+        if (rec) {
+            modules.add(textRec);
+        }
+        modules.removeIf(LazyModule::isInitialized);
+        if (modules.isEmpty()) {
+            return;
+        }
+        long initStart = System.nanoTime();
+        if (parallelInit && modules.size() > 1) {
+            initModulesParallel(modules);
+        } else {
+            for (LazyModule<?> module : modules) {
+                module.get();
+            }
+        }
+        initElapse.put("total", (System.nanoTime() - initStart) / 1e9);
+        if (printVerbose) {
+            System.out.println("RapidOCR init elapse: " + initElapse);
+        }
+    }
+
+    /**
+     * 按预热计划用合成输入运行已启用的模块，未加载的模块会先加载
+     * 每种形状在各模块会话池的每个会话上都会运行，避免部署或扩容后首批请求出现耗时尖峰
+     *
+     * @param plan 预热计划
+     * @return 每种输入形状的耗时
+     */
+    public List<WarmupResult> warmUp(WarmupPlan plan) throws OrtException {
+        preload();
+        int iterations = plan.getIterations();
+        List<WarmupResult> results = new ArrayList<>();
+        if (useDet) {
+            TextDetector detector = textDet.get();
+            Set<String> seen = new HashSet<>();
+            for (int[] size : plan.getDetImageSizes()) {
+                long[] shape = detector.inputShape(size[0], size[1]);
+                if (shape != null && seen.add(Arrays.toString(shape))) {
+                    results.add(new WarmupResult("det", shape, detector.warmUp(shape, iterations)));
+                }
+            }
+        }
+        if (useCls) {
+            TextClassifier classifier = textCls.get();
+            for (int batchSize : orDefault(plan.getClsBatchSizes())) {
+                long[] shape = classifier.inputShape(batchSize);
+                results.add(new WarmupResult("cls", shape, classifier.warmUp(shape, iterations)));
+            }
+        }
+        if (useRec) {
+            TextRecognizer recognizer = textRec.get();
+            for (int batchSize : orDefault(plan.getRecBatchSizes())) {
+                for (int width : orDefault(plan.getRecImageWidths())) {
+                    long[] shape = recognizer.inputShape(batchSize, width);
+                    results.add(new WarmupResult("rec", shape, recognizer.warmUp(shape, iterations)));
+                }
+            }
+        }
+        if (printVerbose) {
+            for (WarmupResult result : results) {
+                System.out.println(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 结束已加载模块的 profiling，并返回各模块耗时最多的算子
+     * 需在对应模块配置中设置 profilingDir；profiling 只能结束一次，之后的推理不再记录
+     *
+     * @param topN 每个模块返回的算子数量
+     * @return 模块名（det/cls/rec）到汇总结果的映射
+     */
+    public Map<String, ProfileSummary> endProfiling(int topN) throws OrtException, IOException {
+        Map<String, ProfileSummary> summaries = new LinkedHashMap<>();
+        if (textDet.isInitialized()) {
+            summaries.put("det", textDet.get().endProfiling(topN));
+        }
+        if (textCls.isInitialized()) {
+            summaries.put("cls", textCls.get().endProfiling(topN));
+        }
+        if (textRec.isInitialized()) {
+            summaries.put("rec", textRec.get().endProfiling(topN));
+        }
+        return summaries;
+    }
+
+    /**
+     * 已加载模块实际生效的执行设备，用于确认 XNNPACK/CUDA 等是否注册成功
+     *
+     * @return 模块名（det/cls/rec）到设备列表的映射
+     */
+    public Map<String, List<String>> getProviders() {
+        Map<String, List<String>> providers = new LinkedHashMap<>();
+        if (textDet.isInitialized()) {
+            providers.put("det", textDet.get().getProviders());
+        }
+        if (textCls.isInitialized()) {
+            providers.put("cls", textCls.get().getProviders());
+        }
+        if (textRec.isInitialized()) {
+            providers.put("rec", textRec.get().getProviders());
+        }
+        return providers;
+    }
+
+    // 未指定时使用 0，表示由模块按配置取默认值
+    private static List<Integer> orDefault(List<Integer> values) {
+        return values == null || values.isEmpty() ? Collections.singletonList(0) : values;
+    }
+
+    /**
+     * 在有界线程池中同时加载多个模型，识别模型的字符文件也同时读取
+     * 任一模块失败时，等待其余模块结束后抛出首个异常，已加载成功的模块保留
+     */
+    private void initModulesParallel(List<LazyModule<?>> modules) {
+        int threads = Math.max(1, Math.min(INIT_THREADS, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "RapidOCR-init-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // 字符文件任务先提交，保证线程数不足时识别任务等待它也不会死锁
+            if (recKeysPath != null && modules.contains(textRec)) {
+                characterPreload = CompletableFuture.supplyAsync(() -> CTCLabelDecode.readCharacterFile(recKeysPath), executor);
+            }
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (LazyModule<?> module : modules) {
+                futures.add(CompletableFuture.supplyAsync(module::get, executor));
+            }
+
+            Throwable failure = null;
+            for (CompletableFuture<?> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (failure == null) {
+                        failure = cause;
+                    } else if (failure != cause) {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        } finally {
+            characterPreload = null;
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 创建模块并记录耗时（秒）
+     */
+    private <T> T timed(String name, Supplier<T> factory) {
+        long start = System.nanoTime();
+        T module = factory.get();
+        initElapse.put(name, (System.nanoTime() - start) / 1e9);
+        return module;
+    }
+
+    /**
+     * 各模块的初始化耗时（秒），包含已加载的 det/cls/rec，以及最近一次批量加载的 total
+     */
+    public Map<String, Double> getInitElapse() {
+        return Collections.unmodifiableMap(initElapse);
+    }
+
+    /**
+     * 释放检测/分类/识别模块持有的共享会话，模型在最后一个使用方释放后关闭
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        textDet.close();
+        textCls.close();
+        textRec.close();
+    }
+
     public OcrResult run(String imagePath) throws Exception {
         return this.runImpl(imagePath, new ParamConfig());
     }
@@ -145,6 +402,23 @@ public class RapidOCR {
      * @return 返回一个包含识别结果和耗时信息的自定义结构
      */
     private OcrResult runImpl(Object imgContent, ParamConfig paramConfig) throws Exception {
+        CancellationToken token = paramConfig.getCancellationToken();
+        Long timeoutMillis = paramConfig.getTimeoutMillis();
+        if (token == null && (timeoutMillis == null || timeoutMillis <= 0)) {
+            return runStages(imgContent, paramConfig, null);
+        }
+        // 派生本次调用的令牌：外部取消或超时都会中止推理
+        CancellationToken parent = token != null ? token : new CancellationToken();
+        try (CancellationToken callToken = parent.withTimeout(timeoutMillis == null ? 0 : timeoutMillis)) {
+            return runStages(imgContent, paramConfig, callToken);
+        }
+    }
+
+    /**
+     * 依次执行检测、分类、识别，每个阶段之前检查取消令牌
+     * 被取消或超时时不再执行后续阶段，返回已完成阶段的结果并标记状态
+     */
+    private OcrResult runStages(Object imgContent, ParamConfig paramConfig, CancellationToken token) throws Exception {
         long startTime = System.nanoTime(); // 记录开始时间 (纳秒)
         // 如果外部没有传值，则使用类内部的默认值
         boolean realUseDet = (paramConfig.getUseDet() == null) ? this.useDet : paramConfig.getUseDet();
@@ -154,13 +428,6 @@ public class RapidOCR {
         float realTextScore = (paramConfig.getTextScore() == null) ? this.textScore : paramConfig.getTextScore();
         boolean returnWordBox = paramConfig.getReturnWordBox() != null && paramConfig.getReturnWordBox();
 
-        if (paramConfig.getBoxThresh() != null) {
-            textDet.postprocessOp.boxThresh = paramConfig.getBoxThresh();
-        }
-        if (paramConfig.getUnclipRatio() != null) {
-            textDet.postprocessOp.unclipRatio = paramConfig.getUnclipRatio();
-        }
-
         // 加载图片
         Mat img = loadImage.call(imgContent);
         // 记录原始图像尺寸
@@ -168,7 +435,7 @@ public class RapidOCR {
         int rawW = img.cols();
 
         // 预处理（缩放到合理大小）
-        Triple<Mat, Float, Float> processedImg = this.preprocess(img);
+        Triple<Mat, Float, Float> processedImg = this.preprocess(img, realUseDet && this.detTileSize > 0);
         img = processedImg.getLeft();
         Float ratioH = processedImg.getMiddle();
         Float ratioW = processedImg.getRight();
@@ -191,7 +458,25 @@ public class RapidOCR {
             // 第二步：根据宽高比或最小高度条件，可能进行 letterbox 填充
             img = this.maybeAddLetterbox(img, opRecord);
             // 执行文本检测
-            Pair<List<Point[]>, Double> detResult = textDet.call(img);
+            Pair<List<Point[]>, Double> detResult;
+            try {
+                if (token != null) {
+                    token.throwIfCancelled();
+                }
+                // boxThresh/unclipRatio 只作用于本次调用
+                if (this.detTileSize > 0) {
+                    // 分块检测，图像不超过分块边长时与普通检测相同
+                    detResult = textDet.get().callTiled(img, paramConfig.getBoxThresh(), paramConfig.getUnclipRatio(), token);
+                } else {
+                    detResult = textDet.get().call(img, paramConfig.getBoxThresh(), paramConfig.getUnclipRatio(), token);
+                }
+            } catch (CancellationToken.CancelledException e) {
+                // 检测未完成，没有可返回的部分结果
+                double elapseSec = (System.nanoTime() - startTime) / 1e9;
+                OcrResult result = new OcrResult("", Collections.emptyList(), elapseSec, detElapsed, clsElapsed, recElapsed);
+                result.setStatus(toStatus(e.getReason()));
+                return result;
+            }
             dtBoxes = detResult.getLeft();       // 检测得到的文本框
             detElapsed = detResult.getRight();  // 检测所耗时间（秒）
 
@@ -211,23 +496,25 @@ public class RapidOCR {
         }
 
         // ========== 2、分类阶段 ==========
-        if (realUseCls) {
-            Triple<List<Mat>, List<Pair<String, Float>>, Double> clsResultTriple = textCls.call(imgList);
+        if (realUseCls && !isCancelled(token)) {
+            Triple<List<Mat>, List<Pair<String, Float>>, Double> clsResultTriple = textCls.get().call(imgList, token);
             imgList = clsResultTriple.getLeft();  // 分类器可能帮我们转正图像
             clsRes = clsResultTriple.getMiddle();          // 分类的标签+置信度
             clsElapsed = clsResultTriple.getRight();       // 分类耗时(秒)
         }
 
         // ========== 3、识别阶段 ==========
-        if (realUseRec) {
+        if (realUseRec && !isCancelled(token)) {
             // 是否返回单词级别的框
-            Pair<List<TupleResult>, Double> resultBundle = textRec.call(imgList, returnWordBox);
+            Pair<List<TupleResult>, Double> resultBundle = textRec.get().call(imgList, returnWordBox, token);
             recRes = resultBundle.getLeft();
             recElapsed = resultBundle.getRight();
         }
 
         // ========== 后处理：计算 word-level boxes（可选） ==========
-        if (dtBoxes != null && recRes != null && returnWordBox) {
+        // 被取消时识别结果不完整，跳过单词框计算
+        boolean cancelled = isCancelled(token);
+        if (dtBoxes != null && recRes != null && returnWordBox && !cancelled) {
             // 调用 calRecBoxes
             recRes = calRecBoxes.call(imgList, dtBoxes, recRes);
 
@@ -245,7 +532,25 @@ public class RapidOCR {
         }
 
         double elapseSec = (System.nanoTime() - startTime) / 1e9; // 转为秒
-        return getFinalRes(dtBoxes, clsRes, recRes, elapseSec, detElapsed, clsElapsed, recElapsed);
+        OcrResult result = getFinalRes(dtBoxes, clsRes, recRes, elapseSec, detElapsed, clsElapsed, recElapsed);
+        // 裁剪出的文本行只在本次调用内使用，及时释放 native 内存
+        if (realUseDet) {
+            for (Mat crop : imgList) {
+                crop.release();
+            }
+        }
+        if (cancelled) {
+            result.setStatus(toStatus(token.getReason()));
+        }
+        return result;
+    }
+
+    private static boolean isCancelled(CancellationToken token) {
+        return token != null && token.isCancelled();
+    }
+
+    private static OcrResult.Status toStatus(CancellationToken.Reason reason) {
+        return reason == CancellationToken.Reason.TIMEOUT ? OcrResult.Status.TIMEOUT : OcrResult.Status.CANCELLED;
     }
 
     public OcrResult getFinalRes(List<Point[]> dtBoxes, List<Pair<String, Float>> clsRes, List<TupleResult> recRes,
@@ -320,10 +625,10 @@ public class RapidOCR {
     }
 
     /**
-     * 预处理：先判断图像最大边是否超过 maxSideLen，如果是则等比例缩小；
+     * 预处理：先判断图像最大边是否超过 maxSideLen，如果是则等比例缩小（分块检测时保持原分辨率）；
      * 再判断图像最小边是否小于 minSideLen，如果是则等比例放大。
      */
-    private Triple<Mat, Float, Float> preprocess(Mat img) {
+    private Triple<Mat, Float, Float> preprocess(Mat img, boolean tiled) {
         int h = img.rows();
         int w = img.cols();
         int maxValue = Math.max(h, w);
@@ -332,7 +637,7 @@ public class RapidOCR {
         float ratioW = 1.0f;
 
         // 如果最大边超出限制则缩小
-        if (maxValue > this.maxSideLen) {
+        if (maxValue > this.maxSideLen && !tiled) {
             try {
                 Triple<Mat, Float, Float> reduced = ProcessImg.reduceMaxSide(img, this.maxSideLen);
                 img = reduced.getLeft();
@@ -492,6 +797,9 @@ public class RapidOCR {
         Imgproc.warpPerspective(img, dstImg, perspectiveTransform,
                 new Size(imgCropWidth, imgCropHeight),
                 Imgproc.INTER_CUBIC, Core.BORDER_REPLICATE);
+        ptsStd.release();
+        ptsSrc.release();
+        perspectiveTransform.release();
 
         // 判断裁剪后的图像是否需要旋转
         if (((double) dstImg.rows() / dstImg.cols()) >= 1.5) {
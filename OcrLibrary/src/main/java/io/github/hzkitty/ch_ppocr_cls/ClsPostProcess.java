@@ -3,6 +3,7 @@ package io.github.hzkitty.ch_ppocr_cls;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.Pair;
 
 public class ClsPostProcess {
@@ -24,6 +25,26 @@ public class ClsPostProcess {
         return decodeOut;
     }
 
+    // 扁平版本，preds 形状为 [batchSize, numClasses]
+    public List<Pair<String, Float>> call(FloatTensor preds) {
+        List<Pair<String, Float>> decodeOut = new ArrayList<>();
+        int batchSize = preds.getDim(0);
+        int numClasses = preds.getDim(1);
+        for (int i = 0; i < batchSize; i++) {
+            int base = i * numClasses;
+            int idx = 0;
+            float max = preds.get(base);
+            for (int c = 1; c < numClasses; c++) {
+                if (preds.get(base + c) > max) {
+                    max = preds.get(base + c);
+                    idx = c;
+                }
+            }
+            decodeOut.add(Pair.of(labelList[idx], max));
+        }
+        return decodeOut;
+    }
+
     // 辅助方法，找出数组中最大值的索引
     private int argMax(float[] array) {
         int bestIdx = 0;
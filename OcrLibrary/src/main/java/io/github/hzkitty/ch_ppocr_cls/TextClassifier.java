@@ -8,21 +8,32 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
 import ai.onnxruntime.OrtException;
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.OcrConfig;
 import io.github.hzkitty.entity.OrtInferConfig;
 import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProfileSummary;
 import io.github.hzkitty.entity.Triple;
+import io.github.hzkitty.utils.CancellationToken;
+import io.github.hzkitty.utils.Float16;
 import io.github.hzkitty.utils.OrtInferSession;
+import io.github.hzkitty.utils.OrtInferSessionPool;
+import io.github.hzkitty.utils.OrtSessionRegistry;
+import io.github.hzkitty.utils.ProfileParser;
 
 /**
  * 对输入图像进行文字方向分类，并在需要时旋转图像。
  */
-public class TextClassifier {
+public class TextClassifier implements AutoCloseable {
 
     // 分类输入图像的形状 [channels, height, width]
     private final int[] clsImageShape;
@@ -32,8 +43,15 @@ public class TextClassifier {
     private final float clsThresh;
     // 分类后处理
     private final ClsPostProcess postProcessOp;
-    // ONNX 运行会话
-    private final OrtInferSession inferSession;
+    // ONNX 运行会话池
+    private final OrtInferSessionPool inferPool;
+    // 每个线程复用的像素读取数组，大小为一张分类输入，随调用线程保留
+    private final ThreadLocal<byte[]> pixelScratch = new ThreadLocal<>();
+    // 归一化系数：(value / 255.0 - 0.5) / 0.5 = value * NORM_SCALE + NORM_SHIFT
+    private static final float NORM_SCALE = 2.0f / 255.0f;
+    private static final float NORM_SHIFT = -1.0f;
+    // 8 位像素只有 256 种取值，FP16 模型按查表写入归一化后的 half
+    private static final short[] HALF_TABLE = halfTable();
 
     /**
      * 构造函数：从 OCRConfig 中读取分类相关的配置，并进行初始化。
@@ -54,9 +72,51 @@ public class TextClassifier {
         ortInferConfig.setUseCuda(clsConfig.useCuda);
         ortInferConfig.setDeviceId(clsConfig.deviceId);
         ortInferConfig.setUseDml(clsConfig.useDml);
-        ortInferConfig.setModelPath(clsConfig.modelPath);
+        ortInferConfig.setModelPath(OrtInferConfig.selectModelPath(clsConfig.modelPath, clsConfig.quantizedModelPath, clsConfig.useQuantized));
         ortInferConfig.setUseArena(clsConfig.useArena);
-        this.inferSession = new OrtInferSession(context, ortInferConfig);
+        ortInferConfig.setSessionPoolSize(clsConfig.sessionPoolSize);
+        ortInferConfig.setOptimizedModelDir(clsConfig.optimizedModelDir);
+        ortInferConfig.setOptimizedModelFormat(clsConfig.optimizedModelFormat);
+        ortInferConfig.setLoadFromMemory(clsConfig.loadFromMemory);
+        ortInferConfig.setProfilingDir(clsConfig.profilingDir);
+        ortInferConfig.setProviders(clsConfig.providers);
+        this.inferPool = OrtSessionRegistry.acquire(context, ortInferConfig);
+    }
+
+    /**
+     * 指定批大小的模型输入形状
+     *
+     * @param batchSize 批大小，小于 1 时使用配置的 clsBatchNum
+     * @return [N, C, H, W]
+     */
+    public long[] inputShape(int batchSize) {
+        int n = batchSize < 1 ? clsBatchNum : batchSize;
+        return new long[]{n, clsImageShape[0], clsImageShape[1], clsImageShape[2]};
+    }
+
+    /**
+     * 预热指定输入形状
+     *
+     * @return 每次运行的耗时（秒）
+     */
+    public List<Double> warmUp(long[] shape, int iterations) throws OrtException {
+        return inferPool.warmUp(shape, iterations);
+    }
+
+    /**
+     * 结束 profiling 并汇总算子耗时，需在配置中设置 profilingDir
+     *
+     * @param topN 返回耗时最多的前 N 个算子
+     */
+    public ProfileSummary endProfiling(int topN) throws OrtException, IOException {
+        return ProfileParser.summarize("cls", inferPool.endProfiling(), topN);
+    }
+
+    /**
+     * 实际生效的执行设备，按优先级排列
+     */
+    public List<String> getProviders() {
+        return inferPool.primary().getProviders();
     }
 
     /**
@@ -66,6 +126,17 @@ public class TextClassifier {
      * @return 三元组：(1) 处理后的图像列表（可能会被旋转）；(2) [标签, 分数] 列表；(3) 运行所耗时(秒)
      */
     public Triple<List<Mat>, List<Pair<String, Float>>, Double> call(List<Mat> imgList) {
+        return call(imgList, null);
+    }
+
+    /**
+     * 对输入图像列表进行分类，可通过取消令牌中止
+     * 被取消时返回已完成批次的结果，其余图像保持原样、分类结果为空
+     *
+     * @param imgList 待分类的图像列表
+     * @param token   取消令牌，可为 null
+     */
+    public Triple<List<Mat>, List<Pair<String, Float>>, Double> call(List<Mat> imgList, CancellationToken token) {
         // 记录开始时间
         long start = System.currentTimeMillis();
 
@@ -92,32 +163,56 @@ public class TextClassifier {
             clsRes.add(Pair.of("", 0.0f));
         }
 
+        // 借出一个推理会话，整个调用期间独占
+        OrtInferSession inferSession = inferPool.borrow();
+        try {
+            classifyBatches(inferSession, imgList, indices, clsRes, token);
+        } catch (CancellationToken.CancelledException e) {
+            // 保留已完成批次的结果，由调用方根据令牌判断是否继续
+        } finally {
+            inferPool.release(inferSession);
+        }
+
+        // 计算总耗时（秒）
+        long end = System.currentTimeMillis();
+        double totalSeconds = (end - start) / 1000.0;
+
+        // 返回处理过后的图像列表、分类结果以及耗时
+        return Triple.of(imgList, clsRes, totalSeconds);
+    }
+
+    /**
+     * 分批执行分类推理，并将结果写回 clsRes 对应位置
+     */
+    private void classifyBatches(OrtInferSession inferSession, List<Mat> imgList, List<Integer> indices,
+                                 List<Pair<String, Float>> clsRes, CancellationToken token) {
         int imgNum = imgList.size();
 
         // 分批处理
         for (int beg = 0; beg < imgNum; beg += clsBatchNum) {
             int end = Math.min(imgNum, beg + clsBatchNum);
+            if (token != null) {
+                token.throwIfCancelled();
+            }
 
-            // 构建当前 batch 的预处理结果
-            List<float[][][][]> batchDataList = new ArrayList<>();
+            // 构建当前 batch 的预处理结果，直接写入 [batchSize, C, H, W] 的输入 buffer
+            int imgC = clsImageShape[0];
+            int imgH = clsImageShape[1];
+            int imgW = clsImageShape[2];
+            int sampleSize = imgC * imgH * imgW;
+            long[] shape = new long[]{end - beg, imgC, imgH, imgW};
+            Buffer inputBuffer = inferSession.acquireModelInput(shape);
 
             for (int idx = beg; idx < end; idx++) {
                 int realIndex = indices.get(idx);
                 // resize & normalize
-                float[][][] normImg = resizeNormImg(imgList.get(realIndex));
-                // 因为推理输入 shape 通常为 [N, C, H, W]，故外层再包一层
-                float[][][][] oneInput = new float[1][normImg.length][normImg[0].length][normImg[0][0].length];
-                oneInput[0] = normImg;
-                batchDataList.add(oneInput);
+                resizeNormImg(imgList.get(realIndex), inputBuffer, (idx - beg) * sampleSize);
             }
 
-            // 将 batchDataList 里的所有样本合并为一个批次 [batchSize, C, H, W]
-            float[][][][] batchData = concatBatchData(batchDataList);
-
             // 推理
-            float[][] probOut;
+            FloatTensor probOut;
             try {
-                probOut = (float[][]) inferSession.run(batchData);
+                probOut = inferSession.runFlat(inputBuffer, shape, token);
             } catch (OrtException e) {
                 e.printStackTrace();
                 continue;
@@ -143,22 +238,16 @@ public class TextClassifier {
                 }
             }
         }
-
-        // 计算总耗时（秒）
-        long end = System.currentTimeMillis();
-        double totalSeconds = (end - start) / 1000.0;
-
-        // 返回处理过后的图像列表、分类结果以及耗时
-        return Triple.of(imgList, clsRes, totalSeconds);
     }
 
     /**
-     * 将单张图像进行 resize 和归一化处理，返回 float[C][H][W]。
+     * 将单张图像进行 resize 和归一化处理，按 CHW 顺序写入 buffer，右侧不足部分补 0。
      *
-     * @param img OpenCV Mat 格式的单张图像
-     * @return 归一化后的图像数据 float[C][H][W]
+     * @param img    OpenCV Mat 格式的单张图像
+     * @param buffer 输入 buffer，FloatBuffer 或 FP16 模型的 ShortBuffer
+     * @param offset 该样本在 buffer 中的起始下标
      */
-    private float[][][] resizeNormImg(Mat img) {
+    private void resizeNormImg(Mat img, Buffer buffer, int offset) {
         // clsImageShape: [channels, imgH, imgW]
         int imgC = clsImageShape[0];
         int imgH = clsImageShape[1];
@@ -176,105 +265,107 @@ public class TextClassifier {
 
         // 1) 先把图像 resize 到 (resizedW, imgH)
         Mat resizedMat = new Mat();
-        Imgproc.resize(img, resizedMat, new Size(resizedW, imgH));
-
-        // 如果只有单通道
-        if (imgC == 1 && resizedMat.channels() == 3) {
-            // 这里可以改成灰度化，或者根据你实际的模型需要来处理
-            Imgproc.cvtColor(resizedMat, resizedMat, Imgproc.COLOR_BGR2GRAY);
-        }
-
-        // 2) 转换为 float 类型，并除以 255
-        resizedMat.convertTo(resizedMat, CvType.CV_32FC(resizedMat.channels()), 1.0 / 255.0);
+        try {
+            Imgproc.resize(img, resizedMat, new Size(resizedW, imgH));
 
-        // 3) 减均值 0.5，再除以 0.5
-        Core.subtract(resizedMat, new Mat(resizedMat.size(), resizedMat.type(),
-                        resizedMat.channels() == 1 ? new org.opencv.core.Scalar(0.5)
-                                : new org.opencv.core.Scalar(0.5, 0.5, 0.5)),
-                resizedMat);
-        Core.divide(resizedMat, new Mat(resizedMat.size(), resizedMat.type(),
-                        resizedMat.channels() == 1 ? new org.opencv.core.Scalar(0.5)
-                                : new org.opencv.core.Scalar(0.5, 0.5, 0.5)),
-                resizedMat);
-
-        // 4) 在 (imgH, imgW) 的画布上进行右侧 padding
-        //    创建一个 (imgH, imgW) 大小，通道数为 imgC，初始值为 0.0 的 Mat
-        Mat paddingMat = new Mat(imgH, imgW, CvType.CV_32FC(resizedMat.channels()));
-        paddingMat.setTo(new org.opencv.core.Scalar(0.0, 0.0, 0.0));
-
-        // 将 resizedMat 拷贝到 paddingMat 的左上角
-        Mat subArea = paddingMat.submat(0, imgH, 0, resizedW);
-        resizedMat.copyTo(subArea);
-
-        // 5) 将 paddingMat 转为 float[C][H][W]，以符合推理输入
-        float[][][] chwData = matToCHWFloatArray(paddingMat, imgC, imgH, imgW);
+            // 如果只有单通道
+            if (imgC == 1 && resizedMat.channels() == 3) {
+                // 这里可以改成灰度化，或者根据你实际的模型需要来处理
+                Imgproc.cvtColor(resizedMat, resizedMat, Imgproc.COLOR_BGR2GRAY);
+            }
 
-        return chwData;
-    }
+            // 非 8 位图像先转为 8 位，与 Python 版的 uint8 输入一致
+            if (resizedMat.depth() != CvType.CV_8U) {
+                resizedMat.convertTo(resizedMat, CvType.CV_8UC(resizedMat.channels()));
+            }
 
-    /**
-     * 将 [1, C, H, W] 的若干数据合并为 [batchSize, C, H, W]。
-     *
-     * @param batchDataList 各样本的数据列表
-     * @return 合并后的四维数组
-     */
-    private float[][][][] concatBatchData(List<float[][][][]> batchDataList) {
-        int batchSize = batchDataList.size();
-        // 假设都符合 [1, C, H, W] 形状
-        int c = batchDataList.get(0)[0].length;
-        int h = batchDataList.get(0)[0][0].length;
-        int w = batchDataList.get(0)[0][0][0].length;
-
-        float[][][][] out = new float[batchSize][c][h][w];
-        for (int i = 0; i < batchSize; i++) {
-            // 因为 batchDataList.get(i) 是一个 [1, C, H, W] 的数组
-            float[][][] data = batchDataList.get(i)[0];
-            out[i] = data;
+            // 2) 归一化并按 CHW 写入 buffer，右侧 padding 写 0
+            matToCHWBuffer(resizedMat, imgC, imgH, imgW, buffer, offset);
+        } finally {
+            resizedMat.release();
         }
-        return out;
     }
 
     /**
-     * 将 OpenCV Mat 转为形状为 float[C][H][W] 的三维数组 (CHW 格式)。
+     * 将 8 位 Mat 归一化后按 CHW 格式写入 buffer，Mat 宽度不足 w 时右侧写 0。
+     * 像素一次读出，(value / 255.0 - 0.5) / 0.5 合并为 value * NORM_SCALE + NORM_SHIFT，
+     * 直接写入 FloatBuffer，或按查表得到的 FP16 写入 ShortBuffer，不生成 float 中间图像。
      *
-     * @param mat 原始 Mat 数据 (float 类型)
-     * @param c   通道数
-     * @param h   高
-     * @param w   宽
-     * @return CHW 格式的三维数组 float[C][H][W]
+     * @param mat    resize 后的 8 位 Mat，高为 h，宽不超过 w
+     * @param c      通道数
+     * @param h      高
+     * @param w      模型输入宽度
+     * @param buffer 输入 buffer，ShortBuffer 按 FP16 写入
+     * @param offset 写入的起始下标
      */
-    private float[][][] matToCHWFloatArray(Mat mat, int c, int h, int w) {
-        // 从 Mat 中读取数据到 float[]
-        float[] matData = new float[c * h * w];
-        mat.get(0, 0, matData);  // 一次性读取所有数据
-
-        float[][][] chwArray = new float[c][h][w];
-
-        if (c == 1) {
-            // 单通道
-            int index = 0;
-            for (int row = 0; row < h; row++) {
-                for (int col = 0; col < w; col++) {
-                    chwArray[0][row][col] = matData[index++];
+    private void matToCHWBuffer(Mat mat, int c, int h, int w, Buffer buffer, int offset) {
+        // 从 Mat 中一次性读取数据到线程复用的 byte[]
+        int matW = mat.cols();
+        byte[] matData = pixelScratch(c * h * matW);
+        mat.get(0, 0, matData);
+
+        // OpenCV 默认存储顺序是 HWC，但我们需要 CHW
+        // matData 的排布是 row-major: b0 g0 r0 b1 g1 r1 ...
+        // 这里假设通道顺序满足需求，否则需要手动再调换
+        int plane = h * w;
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer half = (ShortBuffer) buffer;
+            for (int ch = 0; ch < c; ch++) {
+                for (int row = 0; row < h; row++) {
+                    int rowBase = offset + ch * plane + row * w;
+                    int srcBase = row * matW * c + ch;
+                    for (int col = 0; col < matW; col++) {
+                        half.put(rowBase + col, HALF_TABLE[matData[srcBase + col * c] & 0xFF]);
+                    }
+                    for (int col = matW; col < w; col++) {
+                        half.put(rowBase + col, (short) 0);
+                    }
                 }
             }
-        } else {
-            // 多通道 (如 3 通道)
-            // OpenCV 默认存储顺序是 HWC，但我们需要 CHW
-            // matData 的排布是 row-major: b0 g0 r0 b1 g1 r1 ...
-            // 这里假设通道顺序满足需求，否则需要手动再调换
-            int index = 0;
+            return;
+        }
+        FloatBuffer floats = (FloatBuffer) buffer;
+        for (int ch = 0; ch < c; ch++) {
             for (int row = 0; row < h; row++) {
-                for (int col = 0; col < w; col++) {
-                    for (int ch = 0; ch < c; ch++) {
-                        // 对应于 Python 里的 transpose((2, 0, 1))
-                        chwArray[ch][row][col] = matData[index++];
-                    }
+                // 对应于 Python 里的 transpose((2, 0, 1))
+                int rowBase = offset + ch * plane + row * w;
+                int srcBase = row * matW * c + ch;
+                for (int col = 0; col < matW; col++) {
+                    floats.put(rowBase + col, (matData[srcBase + col * c] & 0xFF) * NORM_SCALE + NORM_SHIFT);
+                }
+                for (int col = matW; col < w; col++) {
+                    floats.put(rowBase + col, 0.0f);
                 }
             }
         }
+    }
 
-        return chwArray;
+    private static short[] halfTable() {
+        short[] table = new short[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = Float16.toHalf(v * NORM_SCALE + NORM_SHIFT);
+        }
+        return table;
+    }
+
+    /**
+     * 当前线程复用的读取数组，长度不足时扩大
+     */
+    private byte[] pixelScratch(int size) {
+        byte[] data = pixelScratch.get();
+        if (data == null || data.length < size) {
+            data = new byte[size];
+            pixelScratch.set(data);
+        }
+        return data;
+    }
+
+    /**
+     * 归还共享的推理会话池
+     */
+    @Override
+    public void close() {
+        OrtSessionRegistry.release(inferPool);
     }
 
 }
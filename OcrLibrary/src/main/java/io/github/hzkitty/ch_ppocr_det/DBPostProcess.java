@@ -6,40 +6,54 @@ import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
 import org.opencv.core.RotatedRect;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import de.lighti.clipper.Clipper;
 import de.lighti.clipper.ClipperOffset;
 import de.lighti.clipper.Path;
 import de.lighti.clipper.Paths;
+import io.github.hzkitty.entity.FloatTensor;
+import io.github.hzkitty.utils.CancellationToken;
 
 /**
  * 用于对DB模型的输出做后处理，生成文本检测框
+ * <p>
+ * 可被多个线程同时调用，掩码等缓冲区由对象自身的池复用，不再使用时调用 {@link #close()} 释放。
  */
-public class DBPostProcess {
+public class DBPostProcess implements AutoCloseable {
 
     // 二值化阈值
     private final float thresh;
-    // 最低得分阈值
-    public float boxThresh;
+    // 最低得分阈值，单次调用可通过参数覆盖
+    public final float boxThresh;
     // 最大候选框数量
     private final int maxCandidates;
-    // 扩张比率
-    public float unclipRatio;
+    // 扩张比率，单次调用可通过参数覆盖
+    public final float unclipRatio;
     // 最小框尺寸，用于过滤小目标
     private final int minSize = 3;
-    // 计算得分的模式: "fast" / "slow"
+    // 计算得分的模式: "fast" / "slow" / "integral"
     private final String scoreMode;
-    // 膨胀核
-    private Mat dilationKernel = null;
+    // "integral" 模式下按积分图计算的最大倾斜，为倾斜量与框高（或宽）之比，超过时回退到多边形填充；
+    // 用水平矩形近似时错算的面积约为框面积乘以该比例的一半，即不超过 5%
+    private static final double INTEGRAL_MAX_SKEW_RATIO = 0.1;
+    // 积分图中概率的定点比例（12 位小数），舍入误差每像素不超过 1/4096；
+    // 积分图按 int 存储并允许溢出回绕，矩形内的真实和不超过 int 范围时差分结果精确
+    private static final int INTEGRAL_SCALE = 1 << 12;
+    // 是否对二值化掩码做 2x2 膨胀
+    private final boolean useDilation;
+    // 空闲的掩码缓冲区，每次调用借出一份、结束后归还，数量不超过同时调用的线程数
+    private final Queue<MaskScratch> idleScratch = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
 
     /**
      * 构造函数
@@ -47,7 +61,8 @@ public class DBPostProcess {
      * @param boxThresh      最低得分阈值
      * @param maxCandidates  最大候选框数
      * @param unclipRatio    扩张比率
-     * @param scoreMode      "fast" or "slow"
+     * @param scoreMode      "fast"、"slow" 或 "integral"；"integral" 每张概率图建一张 (H + 1) x (W + 1) 的 int 积分图，
+     *                       随缓冲区复用直到 {@link #close()}，2016x1504 的概率图约 12MB
      * @param useDilation    是否使用膨胀操作
      */
     public DBPostProcess(float thresh, float boxThresh, int maxCandidates, float unclipRatio, String scoreMode, boolean useDilation) {
@@ -56,11 +71,7 @@ public class DBPostProcess {
         this.maxCandidates = maxCandidates;
         this.unclipRatio = unclipRatio;
         this.scoreMode = scoreMode != null ? scoreMode : "fast";
-
-        if (useDilation) {
-            Mat kernel = Mat.ones(new Size(2, 2), CvType.CV_8UC1);
-            this.dilationKernel = kernel;
-        }
+        this.useDilation = useDilation;
     }
 
     /**
@@ -78,38 +89,265 @@ public class DBPostProcess {
         int h = probMap.length;       // H
         int w = probMap[0].length;    // W
 
-        // 1. 生成二值化掩码 segmentation = pred > thresh
-        byte[] maskData = new byte[h * w];
-        int idx = 0;
+        // 展平为一维，转交给扁平版本处理
+        FloatBuffer flat = FloatBuffer.allocate(h * w);
+        for (float[] row : probMap) {
+            flat.put(row);
+        }
+        flat.rewind();
+        return this.call(new FloatTensor(flat, new long[]{1, 1, h, w}), oriHeight, oriWidth);
+    }
+
+    /**
+     * 后处理主入口（扁平版本），直接按下标读取模型输出的一维 buffer
+     *
+     * @param pred      模型输出预测，形状 [N, 1, H, W]，此处只处理 N=1 的情况
+     * @param oriHeight 原始图像高度
+     * @param oriWidth  原始图像宽度
+     * @return 点位信息和得分
+     */
+    public ResultBundle call(FloatTensor pred, int oriHeight, int oriWidth) {
+        return call(pred, oriHeight, oriWidth, null);
+    }
+
+    /**
+     * 后处理入口，同 {@link #call(FloatTensor, int, int)}，遍历轮廓时检查取消令牌
+     *
+     * @param token 取消令牌，可为 null
+     */
+    public ResultBundle call(FloatTensor pred, int oriHeight, int oriWidth, CancellationToken token) {
+        return call(pred, oriHeight, oriWidth, this.boxThresh, this.unclipRatio, token);
+    }
+
+    /**
+     * 后处理入口，本次调用使用指定的 boxThresh 与 unclipRatio，不修改对象状态，可多线程同时调用
+     *
+     * @param boxThresh   最低得分阈值
+     * @param unclipRatio 扩张比率
+     * @param token       取消令牌，可为 null
+     */
+    public ResultBundle call(FloatTensor pred, int oriHeight, int oriWidth, float boxThresh, float unclipRatio,
+                             CancellationToken token) {
+        return call(pred, pred.getDim(2), pred.getDim(3), oriHeight, oriWidth, boxThresh, unclipRatio, token);
+    }
+
+    /**
+     * 后处理入口，输入经过补齐时只处理概率图左上角 validHeight x validWidth 的有效区域，
+     * 按概率图的行宽跳过补齐部分，不拷贝、不参与阈值化与找轮廓，检测框按有效区域映射回原图
+     *
+     * @param validHeight 有效区域高度
+     * @param validWidth  有效区域宽度
+     * @param boxThresh   最低得分阈值
+     * @param unclipRatio 扩张比率
+     * @param token       取消令牌，可为 null
+     */
+    public ResultBundle call(FloatTensor pred, int validHeight, int validWidth, int oriHeight, int oriWidth,
+                             float boxThresh, float unclipRatio, CancellationToken token) {
+        // pred 的形状 [N, 1, H, W]，这里只处理单张图，即前 H*W 个元素
+        FloatBuffer probMap = pred.getData();
+        int h = validHeight;
+        int w = validWidth;
+        // 概率图的行宽，补齐时大于有效宽度
+        int stride = pred.getDim(3);
+
+        // 1. 生成二值化掩码 segmentation = pred > thresh，2. 若使用膨胀则同一遍完成
+        // 直接写入复用的 direct 缓冲区，该缓冲区即 mask Mat 的数据，不再经过 byte[] 与 JNI 拷贝
+        MaskScratch scratch = borrowScratch();
+        try {
+            Mat mask = scratch.mask(h, w);
+            // "integral" 模式的积分图在同一遍中建立，概率图只读一次
+            int[] integral = "integral".equalsIgnoreCase(this.scoreMode) ? scratch.integral((h + 1) * (w + 1)) : null;
+            thresholdInto(scratch, probMap, stride, integral, h, w);
+
+            // 3. 从mask提取文本框(轮廓) + 计算score
+            return this.boxesFromBitmap(scratch, probMap, stride, mask, integral, oriWidth, oriHeight, boxThresh, unclipRatio, token);
+        } finally {
+            releaseScratch(scratch);
+        }
+    }
+
+    private MaskScratch borrowScratch() {
+        MaskScratch scratch = idleScratch.poll();
+        return scratch != null ? scratch : new MaskScratch();
+    }
+
+    private void releaseScratch(MaskScratch scratch) {
+        idleScratch.offer(scratch);
+        if (closed) {
+            drainScratch();
+        }
+    }
+
+    private void drainScratch() {
+        MaskScratch scratch;
+        while ((scratch = idleScratch.poll()) != null) {
+            scratch.release();
+        }
+    }
+
+    /**
+     * 释放复用的掩码缓冲区，之后仍可调用，但每次调用结束后不再保留缓冲区
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drainScratch();
+    }
+
+    /**
+     * 对概率图二值化（> thresh 为 255），启用膨胀时同时做 2x2 膨胀：
+     * 与 OpenCV 中锚点为 (1, 1) 的 2x2 核相同，dst(r, c) = max(src(r-1..r, c-1..c))，越界的邻居忽略
+     * 概率图按行批量读出，传入 integral 时用同一行累加积分图
+     *
+     * @param scratch  本次调用的缓冲区，掩码写入其中的 direct 缓冲区，行宽为 w
+     * @param probMap  概率图，按行展平
+     * @param stride   概率图的行宽
+     * @param integral 大小 (h + 1) x (w + 1) 的积分图，为 null 时不建立，格式见 {@link #accumulateIntegral}
+     */
+    private void thresholdInto(MaskScratch scratch, FloatBuffer probMap, int stride, int[] integral, int h, int w) {
+        float t = this.thresh;
+        ByteBuffer mask = scratch.data;
+        byte[] prevRow = scratch.prevRow;
+        float[] line = scratch.probRow(w);
+        FloatBuffer src = probMap.duplicate();
+        if (integral != null) {
+            Arrays.fill(integral, 0, w + 1, 0);
+        }
+        int maxAbs = 1;
+        Arrays.fill(prevRow, 0, w, (byte) 0);
         for (int row = 0; row < h; row++) {
-            for (int col = 0; col < w; col++) {
-                float val = probMap[row][col];
-                maskData[idx++] = (byte) ((val > this.thresh) ? 255 : 0);
+            src.position(row * stride);
+            src.get(line, 0, w);
+            int base = row * w;
+            if (!useDilation) {
+                for (int col = 0; col < w; col++) {
+                    mask.put(base + col, line[col] > t ? (byte) 255 : 0);
+                }
+            } else {
+                byte left = 0;
+                for (int col = 0; col < w; col++) {
+                    byte cur = line[col] > t ? (byte) 255 : 0;
+                    // 水平方向：当前与左侧像素
+                    byte horizontal = (byte) (cur | left);
+                    left = cur;
+                    // 垂直方向：再与上一行的水平结果合并
+                    mask.put(base + col, (byte) (horizontal | prevRow[col]));
+                    prevRow[col] = horizontal;
+                }
+            }
+            if (integral != null) {
+                maxAbs = Math.max(maxAbs, accumulateIntegral(integral, line, row, w));
+            }
+        }
+        scratch.integralMaxAbs = maxAbs;
+    }
+
+    /**
+     * 单次调用独占的掩码：direct 缓冲区作为 Mat 的数据，尺寸不变时 Mat 也复用；另含打分用的多边形掩码
+     */
+    private static final class MaskScratch {
+        ByteBuffer data;
+        byte[] prevRow;
+        private Mat mat;
+        // 打分用的多边形掩码与顶点
+        final PolygonRasterizer rasterizer = new PolygonRasterizer();
+        private byte[] polygonMask = new byte[0];
+        private int[] polygonXs = new int[4];
+        private int[] polygonYs = new int[4];
+        // 按行读出的概率图
+        private float[] probRow = new float[0];
+        // "integral" 模式的定点积分图，及其中单个像素定点值的最大绝对值
+        private int[] integral = new int[0];
+        int integralMaxAbs;
+
+        int[] integral(int size) {
+            if (integral.length < size) {
+                integral = new int[size];
             }
+            return integral;
         }
-        // 一次性填充到 OpenCV 的 Mat 中，避免多次 JNI 调用
-        Mat mask = new Mat(h, w, CvType.CV_8UC1);
-        mask.put(0, 0, maskData);
 
-        // 2. 若使用了膨胀操作，则在mask上执行dilate
-        if (this.dilationKernel != null) {
-            Imgproc.dilate(mask, mask, this.dilationKernel);
+        float[] probRow(int w) {
+            if (probRow.length < w) {
+                probRow = new float[w];
+            }
+            return probRow;
         }
 
-        // 3. 从mask提取文本框(轮廓) + 计算score
-        return this.boxesFromBitmap(probMap, mask, oriWidth, oriHeight);
+        /**
+         * 返回长度不小于 size 且前 size 个元素已清零的掩码
+         */
+        byte[] polygonMask(int size) {
+            if (polygonMask.length < size) {
+                polygonMask = new byte[size];
+            } else {
+                Arrays.fill(polygonMask, 0, size, (byte) 0);
+            }
+            return polygonMask;
+        }
+
+        int[] polygonXs(int n) {
+            if (polygonXs.length < n) {
+                polygonXs = new int[n];
+            }
+            return polygonXs;
+        }
+
+        int[] polygonYs(int n) {
+            if (polygonYs.length < n) {
+                polygonYs = new int[n];
+            }
+            return polygonYs;
+        }
+
+        Mat mask(int h, int w) {
+            int size = h * w;
+            if (data == null || data.capacity() < size) {
+                releaseMat();
+                data = ByteBuffer.allocateDirect(size);
+            }
+            if (mat == null || mat.rows() != h || mat.cols() != w) {
+                releaseMat();
+                mat = new Mat(h, w, CvType.CV_8UC1, data);
+            }
+            if (prevRow == null || prevRow.length < w) {
+                prevRow = new byte[w];
+            }
+            return mat;
+        }
+
+        private void releaseMat() {
+            if (mat != null) {
+                mat.release();
+                mat = null;
+            }
+        }
+
+        void release() {
+            releaseMat();
+            data = null;
+            integral = new int[0];
+        }
     }
 
     /**
      * 从二值化掩码中提取文本框 + 计算分数
      *
-     * @param pred       概率图 (H, W)
-     * @param bitmap     二值化掩码 (H, W)
-     * @param destWidth  原图宽度
-     * @param destHeight 原图高度
+     * @param scratch     本次调用的缓冲区
+     * @param pred        概率图，按行展平，只使用左上角 (H, W)
+     * @param stride      概率图的行宽
+     * @param bitmap      二值化掩码 (H, W)
+     * @param integral    "integral" 模式下阈值化时建立的积分图，其他模式为 null
+     * @param destWidth   原图宽度
+     * @param destHeight  原图高度
+     * @param boxThresh   最低得分阈值
+     * @param unclipRatio 扩张比率
+     * @param token       取消令牌，可为 null
      * @return (boxes, scores) => List<BoxPoints> + List<Float>
      */
-    private ResultBundle boxesFromBitmap(float[][] pred, Mat bitmap, int destWidth, int destHeight) {
+    private ResultBundle boxesFromBitmap(MaskScratch scratch, FloatBuffer pred, int stride, Mat bitmap, int[] integral,
+                                         int destWidth, int destHeight,
+                                         float boxThresh, float unclipRatio, CancellationToken token) {
         int h = bitmap.rows();
         int w = bitmap.cols();
 
@@ -129,6 +367,10 @@ public class DBPostProcess {
 
         // 2. 遍历轮廓
         for (int i = 0; i < numContours; i++) {
+            // 轮廓很多时耗时较长，逐个检查是否已取消
+            if (token != null) {
+                token.throwIfCancelled();
+            }
             Point[] contour = contours.get(i).toArray();
             // 把四个点按 x 坐标排序并处理 y 坐标顺序，得到 box
             BoxAndSize boxAndSize = getMiniBoxes(new MatOfPoint2f(contour));
@@ -140,17 +382,19 @@ public class DBPostProcess {
 
             // 2.3 计算score
             float score;
-            if ("fast".equalsIgnoreCase(this.scoreMode)) {
-                score = boxScoreFast(pred, box);
+            if (integral != null) {
+                score = boxScoreIntegral(scratch, integral, pred, stride, w, h, box);
+            } else if ("fast".equalsIgnoreCase(this.scoreMode)) {
+                score = boxScoreFast(scratch, pred, stride, w, h, box);
             } else {
-                score = boxScoreSlow(pred, contour);
+                score = boxScoreSlow(scratch, pred, stride, w, h, contour);
             }
-            if (score < this.boxThresh) {
+            if (score < boxThresh) {
                 continue;
             }
 
             // 2.4 unclip扩展
-            Point[] expanded = unclip(box);
+            Point[] expanded = unclip(box, unclipRatio);
             // 再获取新的最小外接矩形
             BoxAndSize boxAndSize2 = getMiniBoxes(new MatOfPoint2f(expanded));
             Point[] newBox = boxAndSize2.box;
@@ -221,19 +465,6 @@ public class DBPostProcess {
         return new BoxAndSize(box, minSide);
     }
 
-    /**
-     * 计算四边形四条边里最短的一条边长
-     */
-    private float getMinSideOfQuad(Point[] box) {
-        // box依次 [p0, p1, p2, p3]
-        // 边 p0->p1, p1->p2, p2->p3, p3->p0
-        double d1 = dist(box[0], box[1]);
-        double d2 = dist(box[1], box[2]);
-        double d3 = dist(box[2], box[3]);
-        double d4 = dist(box[3], box[0]);
-        return (float) Math.min(Math.min(d1, d2), Math.min(d3, d4));
-    }
-
     private double dist(Point a, Point b) {
         return Math.hypot(a.x - b.x, a.y - b.y);
     }
@@ -241,14 +472,37 @@ public class DBPostProcess {
     /**
      * 计算文本框平均得分(FAST)，对应 Python box_score_fast
      *
-     * @param bitmap 概率图 (H, W)
+     * @param bitmap 概率图 (H, W)，按行展平
+     * @param stride 概率图的行宽
+     * @param w      有效宽度
+     * @param h      有效高度
      * @param box    4个点
      * @return 平均得分
      */
-    private float boxScoreFast(float[][] bitmap, Point[] box) {
-        int h = bitmap.length;
-        int w = bitmap[0].length;
+    private float boxScoreFast(MaskScratch scratch, FloatBuffer bitmap, int stride, int w, int h, Point[] box) {
+        return polygonMeanScore(scratch, bitmap, stride, w, h, box);
+    }
 
+    /**
+     * 计算文本框平均得分(INTEGRAL)：与 fast 相同按四边形计分，
+     * 四边形接近水平时用积分图 O(1) 求矩形内均值：上边两端的高度差不超过框高的 INTEGRAL_MAX_SKEW_RATIO，
+     * 且左边两端的水平差不超过框宽的该比例，与框的大小无关；
+     * 完全水平时覆盖的像素与 fast 相同；倾斜较大，或矩形内定点和可能超出 int 范围（默认概率图约 50 万像素以上的框）时
+     * 回退到 {@link #boxScoreFast}
+     *
+     * @param integral {@link #accumulateIntegral} 逐行生成的积分图
+     * @param box      4个点，顺序为 [左上, 右上, 右下, 左下]
+     */
+    private float boxScoreIntegral(MaskScratch scratch, int[] integral, FloatBuffer bitmap, int stride, int w, int h,
+                                   Point[] box) {
+        double boxW = dist(box[0], box[1]);
+        double boxH = dist(box[0], box[3]);
+        if (Math.abs(box[0].y - box[1].y) > INTEGRAL_MAX_SKEW_RATIO * boxH
+                || Math.abs(box[0].x - box[3].x) > INTEGRAL_MAX_SKEW_RATIO * boxW) {
+            return boxScoreFast(scratch, bitmap, stride, w, h, box);
+        }
+
+        // 外接矩形退化时与 fast 一样返回 0
         double xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE;
         double ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
         for (Point p : box) {
@@ -257,58 +511,71 @@ public class DBPostProcess {
             if (p.y < ymin) ymin = p.y;
             if (p.y > ymax) ymax = p.y;
         }
-
-        // clip
-        int xMin = (int) Math.max(0, Math.min(Math.floor(xmin), w - 1));
-        int xMax = (int) Math.max(0, Math.min(Math.ceil(xmax), w - 1));
-        int yMin = (int) Math.max(0, Math.min(Math.floor(ymin), h - 1));
-        int yMax = (int) Math.max(0, Math.min(Math.ceil(ymax), h - 1));
-
-        if (xMax <= xMin || yMax <= yMin) {
+        if (Math.min(Math.ceil(xmax), w - 1) <= Math.max(0, Math.min(Math.floor(xmin), w - 1))
+                || Math.min(Math.ceil(ymax), h - 1) <= Math.max(0, Math.min(Math.floor(ymin), h - 1))) {
             return 0.0f;
         }
 
-        // 构造一个Mask
-        Mat mask = Mat.zeros(yMax - yMin + 1, xMax - xMin + 1, CvType.CV_8UC1);
+        // 对边取中点得到水平矩形，像素范围与 fillPoly 对整数顶点的覆盖一致（含边界）
+        int x0 = clamp((int) Math.floor((box[0].x + box[3].x) / 2), w - 1);
+        int x1 = clamp((int) Math.floor((box[1].x + box[2].x) / 2), w - 1);
+        int y0 = clamp((int) Math.floor((box[0].y + box[1].y) / 2), h - 1);
+        int y1 = clamp((int) Math.floor((box[2].y + box[3].y) / 2), h - 1);
+        if (x1 < x0 || y1 < y0) {
+            return boxScoreFast(scratch, bitmap, stride, w, h, box);
+        }
 
-        // 将 box 的坐标平移
-        Point[] shifted = new Point[4];
-        for (int i = 0; i < 4; i++) {
-            shifted[i] = new Point(box[i].x - xMin, box[i].y - yMin);
+        int count = (x1 - x0 + 1) * (y1 - y0 + 1);
+        if ((long) count * scratch.integralMaxAbs > Integer.MAX_VALUE) {
+            return boxScoreFast(scratch, bitmap, stride, w, h, box);
         }
+        // 四项都已回绕，int 减法的结果仍是矩形内的真实和
+        int iw = w + 1;
+        int sumVal = integral[(y1 + 1) * iw + x1 + 1] - integral[y0 * iw + x1 + 1]
+                - integral[(y1 + 1) * iw + x0] + integral[y0 * iw + x0];
+        return (float) ((double) sumVal / INTEGRAL_SCALE / count);
+    }
 
-        // fillPoly => 1
-        MatOfPoint mop = new MatOfPoint();
-        mop.fromArray(shifted);
-        List<MatOfPoint> listOfContours = Collections.singletonList(mop);
-        Imgproc.fillPoly(mask, listOfContours, new Scalar(1));
+    private static int clamp(int v, int max) {
+        return Math.max(0, Math.min(v, max));
+    }
 
-        // 计算 ROI 区域内的bitmap平均值
-        double sumVal = 0.0;
-        int count = 0;
-        // 扫描 mask==1 的像素
-        for (int row = 0; row < mask.rows(); row++) {
-            for (int col = 0; col < mask.cols(); col++) {
-                double mVal = mask.get(row, col)[0];
-                if (mVal == 1) {
-                    // bitmap在全局是 yMin+row, xMin+col
-                    float bVal = bitmap[yMin + row][xMin + col];
-                    sumVal += bVal;
-                    count++;
-                }
-            }
+    /**
+     * 累加定点积分图的一行，积分图大小 (h + 1) x (w + 1)，integral[(y + 1) * (w + 1) + x + 1] 为 [0, y] x [0, x] 的和
+     * 概率乘以 INTEGRAL_SCALE 取整后累加，大图上会溢出回绕；数组随缓冲区复用，不限制概率图大小
+     *
+     * @param line 概率图的第 row 行
+     * @return 本行定点值的最大绝对值
+     */
+    private static int accumulateIntegral(int[] integral, float[] line, int row, int w) {
+        int iw = w + 1;
+        int base = (row + 1) * iw;
+        int above = row * iw;
+        int rowSum = 0;
+        int maxAbs = 0;
+        integral[base] = 0;
+        for (int col = 0; col < w; col++) {
+            int q = (int) (line[col] * INTEGRAL_SCALE + 0.5f);
+            maxAbs = Math.max(maxAbs, Math.abs(q));
+            rowSum += q;
+            integral[base + col + 1] = integral[above + col + 1] + rowSum;
         }
-        if (count == 0) return 0.0f;
-        return (float) (sumVal / count);
+        return maxAbs;
     }
 
     /**
      * 计算文本框平均得分(SLOW)，基于多边形本体
      */
-    private float boxScoreSlow(float[][] bitmap, Point[] pts) {
-        int h = bitmap.length;
-        int w = bitmap[0].length;
-        // contour shape (N, 2)
+    private float boxScoreSlow(MaskScratch scratch, FloatBuffer bitmap, int stride, int w, int h, Point[] pts) {
+        return polygonMeanScore(scratch, bitmap, stride, w, h, pts);
+    }
+
+    /**
+     * 多边形覆盖区域内概率的平均值
+     * 在外接矩形大小的 byte[] 掩码上用 {@link PolygonRasterizer} 填充（与 fillPoly 逐像素一致），
+     * 再按行累加概率图，掩码与边表随缓冲区复用，不经过 Mat 与 JNI
+     */
+    private float polygonMeanScore(MaskScratch scratch, FloatBuffer bitmap, int stride, int w, int h, Point[] pts) {
         // 找xmin, xmax, ymin, ymax
         double xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE;
         double ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
@@ -319,6 +586,7 @@ public class DBPostProcess {
             if (p.y > ymax) ymax = p.y;
         }
 
+        // clip
         int xMin = (int) Math.max(0, Math.min(Math.floor(xmin), w - 1));
         int xMax = (int) Math.max(0, Math.min(Math.ceil(xmax), w - 1));
         int yMin = (int) Math.max(0, Math.min(Math.floor(ymin), h - 1));
@@ -328,25 +596,29 @@ public class DBPostProcess {
             return 0.0f;
         }
 
-        // 做一个mask
-        Mat mask = Mat.zeros(yMax - yMin + 1, xMax - xMin + 1, CvType.CV_8UC1);
-
-        // shift contour
-        Point[] shifted = new Point[pts.length];
-        for (int i = 0; i < pts.length; i++) {
-            shifted[i] = new Point(pts[i].x - xMin, pts[i].y - yMin);
+        // 构造外接矩形大小的掩码，坐标平移后按 int 截断，与 MatOfPoint 的转换一致
+        int maskW = xMax - xMin + 1;
+        int maskH = yMax - yMin + 1;
+        byte[] mask = scratch.polygonMask(maskW * maskH);
+        int n = pts.length;
+        int[] xs = scratch.polygonXs(n);
+        int[] ys = scratch.polygonYs(n);
+        for (int i = 0; i < n; i++) {
+            xs[i] = (int) (pts[i].x - xMin);
+            ys[i] = (int) (pts[i].y - yMin);
         }
-        MatOfPoint mop = new MatOfPoint(shifted);
-        List<MatOfPoint> conts = Collections.singletonList(mop);
-        Imgproc.fillPoly(mask, conts, new Scalar(1));
+        scratch.rasterizer.fill(mask, maskW, maskH, xs, ys, n);
 
+        // 计算 ROI 区域内的bitmap平均值
         double sumVal = 0.0;
         int count = 0;
-        for (int row = 0; row < mask.rows(); row++) {
-            for (int col = 0; col < mask.cols(); col++) {
-                if (mask.get(row, col)[0] == 1) {
-                    float val = bitmap[yMin + row][xMin + col];
-                    sumVal += val;
+        for (int row = 0; row < maskH; row++) {
+            int maskBase = row * maskW;
+            // bitmap在全局是 yMin+row, xMin+col
+            int mapBase = (yMin + row) * stride + xMin;
+            for (int col = 0; col < maskW; col++) {
+                if (mask[maskBase + col] != 0) {
+                    sumVal += bitmap.get(mapBase + col);
                     count++;
                 }
             }
@@ -358,14 +630,15 @@ public class DBPostProcess {
     /**
      * 使用Clipper进行 unclip 扩展，仿照 Python 中 pyclipper + shapely
      * 
-     * @param box 原始四边形 (4个点)
+     * @param box         原始四边形 (4个点)
+     * @param unclipRatio 扩张比率
      * @return 扩展后的新多边形点集
      */
-    private Point[] unclip(Point[] box) {
+    private Point[] unclip(Point[] box, float unclipRatio) {
         // 1. area/perimeter 计算
         double area = polygonArea(box);
         double perimeter = polygonPerimeter(box);
-        double distance = area * this.unclipRatio / perimeter;
+        double distance = area * unclipRatio / perimeter;
 
         // 转换为Clipper库需要的路径格式
         Path clipperPath = new Path();
@@ -7,18 +7,38 @@ import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+
+import io.github.hzkitty.entity.Triple;
+import io.github.hzkitty.utils.Float16;
+
 /**
  * 图像检测前处理（使用 Scalar 来减均值、除标准差）
+ * <p>
+ * 创建后不再修改，可被多个线程同时使用；像素读取缓冲区按线程复用，单个缓冲区不超过 4MB。
  */
 public class DetPreProcess {
     // 均值、标准差、缩放因子
     private final Scalar meanScalar;
     private final Scalar stdScalar;
     private final double scale;
+    // 合并后的归一化系数，按通道：pixel * normScale + normBias = (pixel * scale - mean) / std
+    private final float[] normScale;
+    private final float[] normBias;
+    // 每个线程复用的像素读取缓冲区，容量不足时扩大；超过上限的大图每次单独分配，不长期占用
+    private final ThreadLocal<byte[]> pixelScratch = new ThreadLocal<>();
+    private static final int MAX_SCRATCH_BYTES = 4 * 1024 * 1024;
 
     // 限制边长与限制类型
     private final int limitSideLen;
     private final String limitType;
+    // 输入形状档位 {H, W}，按面积升序；为 null 时不补齐
+    private final int[][] shapeBuckets;
 
     /**
      * 构造函数，传入限制边长与限制类型（"max"或"min"），默认值可自行定义
@@ -26,50 +46,180 @@ public class DetPreProcess {
      * @param limitType 限制类型
      */
     public DetPreProcess(int limitSideLen, String limitType) {
+        this(limitSideLen, limitType, null);
+    }
+
+    /**
+     * 构造函数，设置输入形状档位后，resize 结果右侧、下方补 0 到能容纳它的最小档位，
+     * 使模型只会看到固定的几种输入形状；放不进任何档位时先等比缩小到能放下的最大尺寸
+     *
+     * @param limitSideLen 限制边长
+     * @param limitType    限制类型
+     * @param shapeBuckets 输入形状档位 {H, W}，为 null 或空时不补齐
+     */
+    public DetPreProcess(int limitSideLen, String limitType, int[][] shapeBuckets) {
         // 与 Python: mean=[0.5,0.5,0.5], std=[0.5,0.5,0.5], scale=1/255.0
         this.meanScalar = new Scalar(0.5, 0.5, 0.5);
         this.stdScalar = new Scalar(0.5, 0.5, 0.5);
         this.scale = 1.0 / 255.0;
+        this.normScale = new float[3];
+        this.normBias = new float[3];
+        for (int ch = 0; ch < 3; ch++) {
+            normScale[ch] = (float) (scale / stdScalar.val[ch]);
+            normBias[ch] = (float) (-meanScalar.val[ch] / stdScalar.val[ch]);
+        }
 
         this.limitSideLen = limitSideLen;
         // 若未指定则默认用 "min"
         this.limitType = (limitType == null ? "min" : limitType);
+        this.shapeBuckets = sortBuckets(shapeBuckets);
+    }
+
+    private static int[][] sortBuckets(int[][] buckets) {
+        if (buckets == null || buckets.length == 0) {
+            return null;
+        }
+        int[][] sorted = new int[buckets.length][];
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] == null || buckets[i].length != 2 || buckets[i][0] <= 0 || buckets[i][1] <= 0) {
+                throw new IllegalArgumentException("输入形状档位需为 {H, W} 且大于 0");
+            }
+            sorted[i] = buckets[i].clone();
+        }
+        Arrays.sort(sorted, Comparator.comparingLong(b -> (long) b[0] * b[1]));
+        return sorted;
     }
 
     /**
-     * 对图像进行预处理: 1) resize  2) normalize  3) permute  4) expandDims
+     * 对图像进行预处理: 1) resize  2) normalize  3) permute 并写入输入 buffer
+     * 8 位图像在一次遍历中完成 normalize 与 permute，直接写入输入 buffer，不再生成 float 中间图像
      *
-     * @param img OpenCV Mat 格式图像，通常为 BGR
-     * @return 若成功，返回四维 float数组 [1, C, H, W]；若 resize 失败，返回 null
+     * @param img            OpenCV Mat 格式图像，通常为 BGR
+     * @param bufferProvider 根据输入形状提供可写入的 buffer，通常为 OrtInferSession::acquireModelInput，
+     *                       FloatBuffer 写入 float，ShortBuffer 写入 FP16
+     * @return 若成功，返回 (写好 [1, C, H, W] 数据的 buffer, 形状, 有效区域 {H, W})，补齐档位时有效区域位于左上角；
+     * 若 resize 失败，返回 null
      */
-    public float[][][][] call(Mat img) {
+    public Triple<Buffer, long[], int[]> call(Mat img, Function<long[], ? extends Buffer> bufferProvider) {
         // 1. resize
-        Mat resizedImg = resize(img);
-        if (resizedImg == null) {
+        int[] plan = plan(img.rows(), img.cols());
+        if (plan == null) {
             // 若 resize 后尺寸 <=0，返回 null
             return null;
         }
+        Mat resizedImg = resize(img, plan[0], plan[1]);
 
-        // 2. normalize
-        //   (pixel * scale - mean) / std，用 Scalar 与 Core API 实现
-        Mat normImg = normalize(resizedImg);
+        // 2. normalize + permute (H,W,C)->(C,H,W)，直接写入 buffer，batch 维度固定为 1
+        int c = resizedImg.channels();
+        int inputH = plan[2];
+        int inputW = plan[3];
+        long[] shape = new long[]{1, c, inputH, inputW};
+        Buffer buffer = bufferProvider.apply(shape);
+        if (resizedImg.depth() == CvType.CV_8U && c <= 3) {
+            normalizeInto(resizedImg, buffer, inputH, inputW);
+        } else {
+            //   (pixel * scale - mean) / std，用 Scalar 与 Core API 实现
+            Mat normImg = normalize(resizedImg);
+            if (inputH > plan[0] || inputW > plan[1]) {
+                Core.copyMakeBorder(normImg, normImg, 0, inputH - plan[0], 0, inputW - plan[1],
+                        Core.BORDER_CONSTANT, new Scalar(0, 0, 0));
+            }
+            permute(normImg, buffer);
+        }
+        resizedImg.release();
 
-        // 3. permute (H,W,C)->(C,H,W)
-        float[][][] permuted = permute(normImg);
+        return Triple.of(buffer, shape, new int[]{plan[0], plan[1]});
+    }
+
+    /**
+     * 对图像进行预处理: 1) resize  2) normalize  3) permute  4) expandDims
+     * 保留的数组接口，内部走 {@link #call(Mat, Function)}，再拷贝到四维数组
+     *
+     * @param img OpenCV Mat 格式图像，通常为 BGR
+     * @return 若成功，返回四维 float数组 [1, C, H, W]（设置档位时为补齐后的尺寸）；若 resize 失败，返回 null
+     */
+    public float[][][][] call(Mat img) {
+        Triple<Buffer, long[], int[]> prepared = call(img, shape -> FloatBuffer.allocate((int) (shape[1] * shape[2] * shape[3])));
+        if (prepared == null) {
+            return null;
+        }
+        FloatBuffer data = (FloatBuffer) prepared.getLeft();
+        long[] shape = prepared.getMiddle();
+        int c = (int) shape[1];
+        int h = (int) shape[2];
+        int w = (int) shape[3];
+        float[][][][] out = new float[1][c][h][w];
+        for (int ch = 0; ch < c; ch++) {
+            for (int row = 0; row < h; row++) {
+                data.position((ch * h + row) * w);
+                data.get(out[0][ch][row], 0, w);
+            }
+        }
+        return out;
+    }
 
-        // 4. expandDims => [1, C, H, W]
-        return expandDims(permuted);
+    /**
+     * 计算 resize 尺寸与模型输入尺寸
+     * 未设置档位时两者相同；设置档位时输入尺寸为能容纳 resize 结果的最小档位，
+     * 没有档位放得下时按比例缩小到放入缩放比例最大的档位
+     *
+     * @param h 原图高
+     * @param w 原图宽
+     * @return {resizeH, resizeW, inputH, inputW}，尺寸无效时返回 null
+     */
+    public int[] plan(int h, int w) {
+        int[] target = targetSize(h, w);
+        if (target == null) {
+            return null;
+        }
+        int resizeH = target[0];
+        int resizeW = target[1];
+        if (shapeBuckets == null) {
+            return new int[]{resizeH, resizeW, resizeH, resizeW};
+        }
+        for (int[] bucket : shapeBuckets) {
+            if (bucket[0] >= resizeH && bucket[1] >= resizeW) {
+                return new int[]{resizeH, resizeW, bucket[0], bucket[1]};
+            }
+        }
+        int[] best = shapeBuckets[0];
+        double bestScale = 0;
+        for (int[] bucket : shapeBuckets) {
+            double bucketScale = Math.min((double) bucket[0] / resizeH, (double) bucket[1] / resizeW);
+            if (bucketScale > bestScale) {
+                bestScale = bucketScale;
+                best = bucket;
+            }
+        }
+        int fitH = Math.max(1, Math.min(best[0], (int) (resizeH * bestScale)));
+        int fitW = Math.max(1, Math.min(best[1], (int) (resizeW * bestScale)));
+        return new int[]{fitH, fitW, best[0], best[1]};
     }
 
     /**
-     * resize 到 32 的倍数，
-     * 若 limitType="max"，当 max(h,w)>limitSideLen 时才缩放；
-     * 若 limitType="min"，当 min(h,w)<limitSideLen 时才放大；
+     * resize 到 {@link #plan(int, int)} 计算出的尺寸
      */
-    private Mat resize(Mat img) {
-        int h = img.rows();
-        int w = img.cols();
+    private Mat resize(Mat img, int resizeH, int resizeW) {
+        // 使用 OpenCV 进行 resize
+        Mat dst = new Mat();
+        try {
+            Imgproc.resize(img, dst, new Size(resizeW, resizeH));
+        } catch (Exception e) {
+            throw new ResizeImgError("Fail to resize image", e);
+        }
+        return dst;
+    }
 
+    /**
+     * 计算 resize 后的尺寸，宽高取整到 32 的倍数：
+     * 若 limitType="max"，当 max(h,w)>limitSideLen 时才缩放；
+     * 若 limitType="min"，当 min(h,w)<limitSideLen 时才放大
+     *
+     * @param h 原图高
+     * @param w 原图宽
+     * @return {resizeH, resizeW}，尺寸无效时返回 null
+     */
+    public int[] targetSize(int h, int w) {
         float ratio;
         if ("max".equalsIgnoreCase(limitType)) {
             // 若 max(h,w) > limitSideLen => ratio=limitSideLen/max(h,w) 否则 1.0
@@ -97,15 +247,7 @@ public class DetPreProcess {
         if (resizeH <= 0 || resizeW <= 0) {
             return null;
         }
-
-        // 使用 OpenCV 进行 resize
-        Mat dst = new Mat();
-        try {
-            Imgproc.resize(img, dst, new Size(resizeW, resizeH));
-        } catch (Exception e) {
-            throw new ResizeImgError("Fail to resize image", e);
-        }
-        return dst;
+        return new int[]{resizeH, resizeW};
     }
 
     /**
@@ -127,6 +269,88 @@ public class DetPreProcess {
         return img;
     }
 
+    /**
+     * 单次遍历完成 (pixel * scale - mean) / std 与 (H,W,C)->(C,H,W)，按绝对下标写入 buffer
+     * 每个通道合并为 pixel * k + b，系数在构造时预先计算；ShortBuffer 按 FP16 写入
+     * 输入尺寸大于图像时，右侧与下方的补齐区域写 0（buffer 会被复用，需显式清零）
+     */
+    private void normalizeInto(Mat img, Buffer buffer, int inputH, int inputW) {
+        int c = img.channels();
+        int h = img.rows();
+        int w = img.cols();
+        int size = h * w * c;
+        byte[] data = pixelScratch.get();
+        // Mat.get 要求数组长度为通道数的整数倍
+        if (data == null || data.length < size || data.length % c != 0) {
+            data = new byte[size];
+            if (size <= MAX_SCRATCH_BYTES) {
+                pixelScratch.set(data);
+            }
+        }
+        img.get(0, 0, data);
+
+        float[] k = normScale;
+        float[] b = normBias;
+        int plane = inputH * inputW;
+
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer half = (ShortBuffer) buffer;
+            for (int row = 0, p = 0; row < h; row++) {
+                int rowBase = row * inputW;
+                for (int col = 0; col < w; col++) {
+                    for (int ch = 0; ch < c; ch++, p++) {
+                        half.put(ch * plane + rowBase + col, Float16.toHalf((data[p] & 0xFF) * k[ch] + b[ch]));
+                    }
+                }
+            }
+            if (inputH > h || inputW > w) {
+                for (int ch = 0; ch < c; ch++) {
+                    for (int row = 0; row < inputH; row++) {
+                        int rowBase = ch * plane + row * inputW;
+                        for (int col = row < h ? w : 0; col < inputW; col++) {
+                            half.put(rowBase + col, (short) 0);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        FloatBuffer floats = (FloatBuffer) buffer;
+        if (c == 3) {
+            // 常见的三通道单独展开，省去内层循环
+            float k0 = k[0], k1 = k[1], k2 = k[2];
+            float b0 = b[0], b1 = b[1], b2 = b[2];
+            int plane2 = plane * 2;
+            for (int row = 0, p = 0; row < h; row++) {
+                int i = row * inputW;
+                for (int end = i + w; i < end; i++, p += 3) {
+                    floats.put(i, (data[p] & 0xFF) * k0 + b0);
+                    floats.put(plane + i, (data[p + 1] & 0xFF) * k1 + b1);
+                    floats.put(plane2 + i, (data[p + 2] & 0xFF) * k2 + b2);
+                }
+            }
+        } else {
+            for (int row = 0, p = 0; row < h; row++) {
+                int rowBase = row * inputW;
+                for (int col = 0; col < w; col++) {
+                    for (int ch = 0; ch < c; ch++, p++) {
+                        floats.put(ch * plane + rowBase + col, (data[p] & 0xFF) * k[ch] + b[ch]);
+                    }
+                }
+            }
+        }
+        if (inputH > h || inputW > w) {
+            for (int ch = 0; ch < c; ch++) {
+                for (int row = 0; row < inputH; row++) {
+                    int rowBase = ch * plane + row * inputW;
+                    for (int col = row < h ? w : 0; col < inputW; col++) {
+                        floats.put(rowBase + col, 0f);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * 将图像从 (H,W,C) 转换为 (C,H,W) 的三维 float 数组
      */
@@ -148,15 +372,13 @@ public class DetPreProcess {
 //    }
 
     /**
-     * 将图像从 (H,W,C) 转换为 (C,H,W) 的三维 float 数组
+     * 将图像从 (H,W,C) 按 (C,H,W) 顺序写入 buffer，ShortBuffer 按 FP16 写入
      */
-    private float[][][] permute(Mat img) {
+    private void permute(Mat img, Buffer buffer) {
         int h = img.rows();
         int w = img.cols();
         int c = img.channels();
 
-        float[][][] output = new float[c][h][w];
-
         // 1. 转成 float 类型（若尚未转换）
         if (img.type() != CvType.CV_32FC(c)) {
             img = img.clone();  // 避免原图被修改
@@ -167,35 +389,25 @@ public class DetPreProcess {
         float[] data = new float[h * w * c];
         img.get(0, 0, data);  // 按 HWC 展平提取
 
-        // 3. 重排为 CHW
-        for (int row = 0; row < h; row++) {
-            for (int col = 0; col < w; col++) {
-                int baseIdx = (row * w + col) * c;
+        // 3. 重排为 CHW，按绝对下标写入
+        int plane = h * w;
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer half = (ShortBuffer) buffer;
+            for (int i = 0; i < plane; i++) {
+                int baseIdx = i * c;
                 for (int ch = 0; ch < c; ch++) {
-                    output[ch][row][col] = data[baseIdx + ch];
+                    half.put(ch * plane + i, Float16.toHalf(data[baseIdx + ch]));
                 }
             }
+            return;
         }
-
-        return output;
-    }
-
-
-    /**
-     * 扩展一个 batch 维度 => [1, C, H, W]
-     */
-    private float[][][][] expandDims(float[][][] permuted) {
-        int c = permuted.length;
-        int h = permuted[0].length;
-        int w = permuted[0][0].length;
-
-        float[][][][] out = new float[1][c][h][w];
-        for (int cc = 0; cc < c; cc++) {
-            for (int hh = 0; hh < h; hh++) {
-                System.arraycopy(permuted[cc][hh], 0, out[0][cc][hh], 0, w);
+        FloatBuffer floats = (FloatBuffer) buffer;
+        for (int i = 0; i < plane; i++) {
+            int baseIdx = i * c;
+            for (int ch = 0; ch < c; ch++) {
+                floats.put(ch * plane + i, data[baseIdx + ch]);
             }
         }
-        return out;
     }
 
     /**
@@ -0,0 +1,360 @@
+package io.github.hzkitty.ch_ppocr_det;
+
+import java.util.Arrays;
+
+/**
+ * 纯 Java 的多边形扫描线填充，结果与 OpenCV Imgproc.fillPoly（LINE_8，shift = 0）逐像素一致：
+ * 先按 8 连通画出各条边，再按扫描线填充内部，坐标用 16 位定点数表示。
+ * <p>
+ * 边表等临时数组在实例内复用，单个实例不可被多个线程同时使用。
+ */
+public class PolygonRasterizer {
+
+    private static final int XY_SHIFT = 16;
+    private static final long XY_ONE = 1L << XY_SHIFT;
+
+    // 边表：起止行、当前 x（定点数）、每行 x 增量、活动边链表中的下一条边
+    private int[] edgeY0 = new int[8];
+    private int[] edgeY1 = new int[8];
+    private long[] edgeX = new long[8];
+    private long[] edgeDx = new long[8];
+    private int[] edgeNext = new int[8];
+    private Integer[] order = new Integer[8];
+    private int edgeCount;
+
+    // clipLine 的输入输出
+    private final long[] clipped = new long[4];
+
+    /**
+     * 将多边形填充为 1
+     *
+     * @param mask   按行展平的掩码，调用方负责清零
+     * @param width  掩码宽
+     * @param height 掩码高
+     * @param xs     顶点 x
+     * @param ys     顶点 y
+     * @param n      顶点数
+     */
+    public void fill(byte[] mask, int width, int height, int[] xs, int[] ys, int n) {
+        ensureCapacity(n + 1);
+        edgeCount = 0;
+        collectPolyEdges(mask, width, height, xs, ys, n);
+        fillEdgeCollection(mask, width, height);
+    }
+
+    private void ensureCapacity(int n) {
+        if (edgeY0.length >= n) {
+            return;
+        }
+        int size = Math.max(n, edgeY0.length * 2);
+        edgeY0 = Arrays.copyOf(edgeY0, size);
+        edgeY1 = Arrays.copyOf(edgeY1, size);
+        edgeX = Arrays.copyOf(edgeX, size);
+        edgeDx = Arrays.copyOf(edgeDx, size);
+        edgeNext = Arrays.copyOf(edgeNext, size);
+        order = new Integer[size];
+    }
+
+    /**
+     * 画出每条边并收集非水平边
+     */
+    private void collectPolyEdges(byte[] mask, int width, int height, int[] xs, int[] ys, int n) {
+        long pt0x = (long) xs[n - 1] << XY_SHIFT;
+        long pt0y = ys[n - 1];
+        for (int i = 0; i < n; i++) {
+            long pt1x = (long) xs[i] << XY_SHIFT;
+            long pt1y = ys[i];
+
+            long t0x = (pt0x + (XY_ONE >> 1)) >> XY_SHIFT;
+            long t0y = pt0y;
+            long t1x = (pt1x + (XY_ONE >> 1)) >> XY_SHIFT;
+            long t1y = pt1y;
+            line(mask, width, height, (int) t0x, (int) t0y, (int) t1x, (int) t1y);
+
+            long pt0cx = pt0x, pt0cy = pt0y, pt1cx = pt1x, pt1cy = pt1y;
+            if (t0x < 0 || t0x >= width || t1x < 0 || t1x >= width
+                    || t0y < 0 || t0y >= height || t1y < 0 || t1y >= height) {
+                // 边超出图像时，用裁剪后的端点计算更准确的边
+                clipped[0] = t0x;
+                clipped[1] = t0y;
+                clipped[2] = t1x;
+                clipped[3] = t1y;
+                clipLine(width, height, clipped);
+                if (clipped[1] != clipped[3]) {
+                    pt0cy = clipped[1];
+                    pt1cy = clipped[3];
+                    pt0cx = clipped[0] << XY_SHIFT;
+                    pt1cx = clipped[2] << XY_SHIFT;
+                }
+            } else {
+                pt0cx += XY_ONE >> 1;
+                pt1cx += XY_ONE >> 1;
+            }
+
+            if (pt0y != pt1y) {
+                int e = edgeCount++;
+                long dx = (pt1cx - pt0cx) / (pt1cy - pt0cy);
+                edgeDx[e] = dx;
+                if (pt0y < pt1y) {
+                    edgeY0[e] = (int) pt0y;
+                    edgeY1[e] = (int) pt1y;
+                    edgeX[e] = pt0cx + (edgeY0[e] - pt0cy) * dx;
+                } else {
+                    edgeY0[e] = (int) pt1y;
+                    edgeY1[e] = (int) pt0y;
+                    edgeX[e] = pt1cx + (edgeY0[e] - pt1cy) * dx;
+                }
+            }
+            pt0x = pt1x;
+            pt0y = pt1y;
+        }
+    }
+
+    /**
+     * 扫描线填充：活动边表按 x 排序，每行在成对的边之间填充
+     */
+    private void fillEdgeCollection(byte[] mask, int width, int height) {
+        int total = edgeCount;
+        if (total < 2) {
+            return;
+        }
+        int yMax = Integer.MIN_VALUE, yMin = Integer.MAX_VALUE;
+        long xMax = Long.MIN_VALUE, xMin = Long.MAX_VALUE;
+        for (int i = 0; i < total; i++) {
+            long x1 = edgeX[i] + (edgeY1[i] - edgeY0[i]) * edgeDx[i];
+            yMin = Math.min(yMin, edgeY0[i]);
+            yMax = Math.max(yMax, edgeY1[i]);
+            xMin = Math.min(xMin, Math.min(edgeX[i], x1));
+            xMax = Math.max(xMax, Math.max(edgeX[i], x1));
+        }
+        if (yMax < 0 || yMin >= height || xMax < 0 || xMin >= ((long) width << XY_SHIFT)) {
+            return;
+        }
+
+        // 按 (y0, x, dx) 排序
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, 0, total, (a, b) -> {
+            if (edgeY0[a] != edgeY0[b]) {
+                return Integer.compare(edgeY0[a], edgeY0[b]);
+            }
+            if (edgeX[a] != edgeX[b]) {
+                return Long.compare(edgeX[a], edgeX[b]);
+            }
+            return Long.compare(edgeDx[a], edgeDx[b]);
+        });
+
+        // 活动边链表，-1 为表头，-2 为空
+        final int head = -1;
+        final int nil = -2;
+        int headNext = nil;
+        int i = 0;
+        yMax = Math.min(yMax, height);
+
+        for (int y = edgeY0[order[0]]; y < yMax; y++) {
+            int prelast = head;
+            int last = headNext;
+            boolean draw = false;
+            boolean clipRow = y < 0;
+
+            while (last != nil || (i < total && edgeY0[order[i]] == y)) {
+                if (last != nil && edgeY1[last] == y) {
+                    // 到达下端点，移出活动边表
+                    int next = edgeNext[last];
+                    if (prelast == head) {
+                        headNext = next;
+                    } else {
+                        edgeNext[prelast] = next;
+                    }
+                    last = next;
+                    continue;
+                }
+                int keepPrelast = prelast;
+                int e = i < total ? order[i] : nil;
+                if (last != nil && (e == nil || edgeY0[e] > y || edgeX[last] < edgeX[e])) {
+                    prelast = last;
+                    last = edgeNext[last];
+                } else if (i < total) {
+                    // 到达上端点，插入活动边表
+                    if (prelast == head) {
+                        headNext = e;
+                    } else {
+                        edgeNext[prelast] = e;
+                    }
+                    edgeNext[e] = last;
+                    prelast = e;
+                    i++;
+                } else {
+                    break;
+                }
+
+                if (draw) {
+                    if (!clipRow) {
+                        int x1, x2;
+                        if (edgeX[keepPrelast] > edgeX[prelast]) {
+                            x1 = (int) (edgeX[prelast] >> XY_SHIFT);
+                            x2 = (int) (edgeX[keepPrelast] >> XY_SHIFT);
+                        } else {
+                            x1 = (int) (edgeX[keepPrelast] >> XY_SHIFT);
+                            x2 = (int) (edgeX[prelast] >> XY_SHIFT);
+                        }
+                        if (x1 < width && x2 >= 0) {
+                            x1 = Math.max(x1, 0);
+                            x2 = Math.min(x2, width - 1);
+                            Arrays.fill(mask, y * width + x1, y * width + x2 + 1, (byte) 1);
+                        }
+                    }
+                    edgeX[keepPrelast] += edgeDx[keepPrelast];
+                    edgeX[prelast] += edgeDx[prelast];
+                }
+                draw = !draw;
+            }
+
+            // 活动边按 x 冒泡排序
+            int keepPrelast = nil;
+            do {
+                prelast = head;
+                last = headNext;
+                int lastExchange = nil;
+                while (last != keepPrelast && edgeNext[last] != nil) {
+                    int te = edgeNext[last];
+                    if (edgeX[last] > edgeX[te]) {
+                        if (prelast == head) {
+                            headNext = te;
+                        } else {
+                            edgeNext[prelast] = te;
+                        }
+                        edgeNext[last] = edgeNext[te];
+                        edgeNext[te] = last;
+                        prelast = te;
+                        lastExchange = prelast;
+                    } else {
+                        prelast = last;
+                        last = te;
+                    }
+                }
+                if (lastExchange == nil) {
+                    break;
+                }
+                keepPrelast = lastExchange;
+            } while (keepPrelast != headNext && keepPrelast != head);
+        }
+    }
+
+    /**
+     * 8 连通直线，超出图像时先裁剪
+     */
+    private void line(byte[] mask, int width, int height, int x1, int y1, int x2, int y2) {
+        if (x1 < 0 || x1 >= width || x2 < 0 || x2 >= width || y1 < 0 || y1 >= height || y2 < 0 || y2 >= height) {
+            clipped[0] = x1;
+            clipped[1] = y1;
+            clipped[2] = x2;
+            clipped[3] = y2;
+            if (!clipLine(width, height, clipped)) {
+                return;
+            }
+            x1 = (int) clipped[0];
+            y1 = (int) clipped[1];
+            x2 = (int) clipped[2];
+            y2 = (int) clipped[3];
+        }
+
+        int deltaX = 1, deltaY = 1;
+        int dx = x2 - x1;
+        int dy = y2 - y1;
+        if (dx < 0) {
+            // 从左向右画
+            dx = -dx;
+            dy = -dy;
+            int tx = x1, ty = y1;
+            x1 = x2;
+            y1 = y2;
+            x2 = tx;
+            y2 = ty;
+        }
+        if (dy < 0) {
+            dy = -dy;
+            deltaY = -1;
+        }
+        boolean vert = dy > dx;
+        if (vert) {
+            int t = dx;
+            dx = dy;
+            dy = t;
+        }
+
+        int err = dx - (dy + dy);
+        int plusDelta = dx + dx;
+        int minusDelta = -(dy + dy);
+        int count = dx + 1;
+        int x = x1, y = y1;
+        for (int k = 0; k < count; k++) {
+            mask[y * width + x] = 1;
+            boolean plus = err < 0;
+            err += minusDelta + (plus ? plusDelta : 0);
+            if (vert) {
+                y += deltaY;
+                if (plus) {
+                    x += deltaX;
+                }
+            } else {
+                x += deltaX;
+                if (plus) {
+                    y += deltaY;
+                }
+            }
+        }
+    }
+
+    /**
+     * 将线段裁剪到 [0, width - 1] x [0, height - 1]，同 OpenCV clipLine
+     *
+     * @param pt {x1, y1, x2, y2}，就地修改
+     * @return 线段与图像有交集时返回 true
+     */
+    private static boolean clipLine(int width, int height, long[] pt) {
+        long right = width - 1, bottom = height - 1;
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        long x1 = pt[0], y1 = pt[1], x2 = pt[2], y2 = pt[3];
+        int c1 = (x1 < 0 ? 1 : 0) + (x1 > right ? 2 : 0) + (y1 < 0 ? 4 : 0) + (y1 > bottom ? 8 : 0);
+        int c2 = (x2 < 0 ? 1 : 0) + (x2 > right ? 2 : 0) + (y2 < 0 ? 4 : 0) + (y2 > bottom ? 8 : 0);
+
+        if ((c1 & c2) == 0 && (c1 | c2) != 0) {
+            long a;
+            if ((c1 & 12) != 0) {
+                a = c1 < 8 ? 0 : bottom;
+                x1 += (long) ((double) (a - y1) * (x2 - x1) / (y2 - y1));
+                y1 = a;
+                c1 = (x1 < 0 ? 1 : 0) + (x1 > right ? 2 : 0);
+            }
+            if ((c2 & 12) != 0) {
+                a = c2 < 8 ? 0 : bottom;
+                x2 += (long) ((double) (a - y2) * (x2 - x1) / (y2 - y1));
+                y2 = a;
+                c2 = (x2 < 0 ? 1 : 0) + (x2 > right ? 2 : 0);
+            }
+            if ((c1 & c2) == 0 && (c1 | c2) != 0) {
+                if (c1 != 0) {
+                    a = c1 == 1 ? 0 : right;
+                    y1 += (long) ((double) (a - x1) * (y2 - y1) / (x2 - x1));
+                    x1 = a;
+                    c1 = 0;
+                }
+                if (c2 != 0) {
+                    a = c2 == 1 ? 0 : right;
+                    y2 += (long) ((double) (a - x2) * (y2 - y1) / (x2 - x1));
+                    x2 = a;
+                    c2 = 0;
+                }
+            }
+        }
+        pt[0] = x1;
+        pt[1] = y1;
+        pt[2] = x2;
+        pt[3] = y2;
+        return (c1 | c2) == 0;
+    }
+}
@@ -4,28 +4,58 @@ import android.content.Context;
 
 import org.opencv.core.Mat;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ai.onnxruntime.OrtException;
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.OcrConfig;
 import io.github.hzkitty.entity.OrtInferConfig;
 import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProfileSummary;
+import io.github.hzkitty.entity.Triple;
+import io.github.hzkitty.utils.CancellationToken;
 import io.github.hzkitty.utils.OrtInferSession;
+import io.github.hzkitty.utils.OrtInferSessionPool;
+import io.github.hzkitty.utils.OrtSessionRegistry;
+import io.github.hzkitty.utils.ProfileParser;
 
 /**
  * 文本检测
+ * <p>
+ * 创建后不再保存单次调用的状态，同一实例可被多个线程同时使用，并发数由会话池大小决定。
  */
-public class TextDetector {
+public class TextDetector implements AutoCloseable {
+
+    // limitType 为 "max" 时按原图最大边选择的限制边长档位
+    private static final int[] MAX_SIDE_BUCKETS = {960, 1500, 2000};
 
     private final String limitType;        // "min" / "max" 等限制类型
     private final int limitSideLen;        // 限制边长
-    private DetPreProcess preprocessOp;    // 预处理对象
+    private final DetPreProcess[] preprocessOps; // 按限制边长档位缓存的预处理对象
     public final DBPostProcess postprocessOp;  // 后处理对象
-    private final OrtInferSession infer;         // ONNX 推理会话
+    private final OrtInferSessionPool inferPool; // ONNX 推理会话池
+    private final int tileSize;            // 分块边长，0 表示不分块
+    private final int tileOverlap;         // 相邻分块的重叠像素
+    private final DetPreProcess tilePreprocessOp; // 分块按原分辨率检测，补齐到分块或配置的形状档位
+    private final int batchNum;            // 批量检测时单次推理的最大图片数
+    private final ExecutorService workerExecutor; // 会话池大于 1 时并行检测分块、并行后处理批量结果，否则为 null
 
     /**
      * 构造函数，初始化预处理、后处理和推理模块。
@@ -36,6 +66,15 @@ public class TextDetector {
         // 1. 获取 limitType / limitSideLen
         this.limitType = detConfig.getLimitType();
         this.limitSideLen = detConfig.getLimitSideLen();
+        int[][] shapeBuckets = detConfig.getShapeBuckets();
+        if ("min".equalsIgnoreCase(this.limitType)) {
+            this.preprocessOps = new DetPreProcess[]{new DetPreProcess(this.limitSideLen, this.limitType, shapeBuckets)};
+        } else {
+            this.preprocessOps = new DetPreProcess[MAX_SIDE_BUCKETS.length];
+            for (int i = 0; i < MAX_SIDE_BUCKETS.length; i++) {
+                this.preprocessOps[i] = new DetPreProcess(MAX_SIDE_BUCKETS[i], this.limitType, shapeBuckets);
+            }
+        }
 
         // 2. 后处理参数
         float thresh = detConfig.getThresh();
@@ -55,9 +94,33 @@ public class TextDetector {
         ortInferConfig.setUseCuda(detConfig.useCuda);
         ortInferConfig.setDeviceId(detConfig.deviceId);
         ortInferConfig.setUseDml(detConfig.useDml);
-        ortInferConfig.setModelPath(detConfig.modelPath);
+        ortInferConfig.setModelPath(OrtInferConfig.selectModelPath(detConfig.modelPath, detConfig.quantizedModelPath, detConfig.useQuantized));
         ortInferConfig.setUseArena(detConfig.useArena);
-        this.infer = new OrtInferSession(context, ortInferConfig);
+        ortInferConfig.setSessionPoolSize(detConfig.sessionPoolSize);
+        ortInferConfig.setOptimizedModelDir(detConfig.optimizedModelDir);
+        ortInferConfig.setOptimizedModelFormat(detConfig.optimizedModelFormat);
+        ortInferConfig.setLoadFromMemory(detConfig.loadFromMemory);
+        ortInferConfig.setProfilingDir(detConfig.profilingDir);
+        ortInferConfig.setProviders(detConfig.providers);
+        this.inferPool = OrtSessionRegistry.acquire(context, ortInferConfig);
+
+        this.batchNum = Math.max(1, detConfig.getDetBatchNum());
+
+        // 分块检测
+        this.tileSize = Math.max(0, detConfig.getTileSize());
+        this.tileOverlap = Math.max(0, Math.min(detConfig.getTileOverlap(), this.tileSize / 2));
+        this.tilePreprocessOp = this.tileSize > 0
+                ? new DetPreProcess(this.tileSize, "max", tileBuckets(this.tileSize, shapeBuckets)) : null;
+        if ((this.tileSize > 0 || this.batchNum > 1) && inferPool.size() > 1) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.workerExecutor = Executors.newFixedThreadPool(inferPool.size(), r -> {
+                Thread thread = new Thread(r, "TextDetector-worker-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.workerExecutor = null;
+        }
     }
 
     /**
@@ -67,64 +130,445 @@ public class TextDetector {
      * @throws OrtException 异常
      */
     public Pair<List<Point[]>, Double> call(Mat img) throws OrtException {
+        return call(img, null);
+    }
+
+    /**
+     * 对输入图像进行文本检测，可通过取消令牌中止推理和后处理
+     *
+     * @param img   输入图像
+     * @param token 取消令牌，可为 null
+     * @return (检测到的文本框, 处理时间)
+     * @throws CancellationToken.CancelledException 检测过程中被取消
+     */
+    public Pair<List<Point[]>, Double> call(Mat img, CancellationToken token) throws OrtException {
+        return call(img, null, null, token);
+    }
+
+    /**
+     * 对输入图像进行文本检测，本次调用可覆盖 boxThresh 与 unclipRatio，不影响其他调用
+     *
+     * @param img         输入图像
+     * @param boxThresh   最低得分阈值，为 null 时使用配置值
+     * @param unclipRatio 扩张比率，为 null 时使用配置值
+     * @param token       取消令牌，可为 null
+     * @return (检测到的文本框, 处理时间)
+     * @throws CancellationToken.CancelledException 检测过程中被取消
+     */
+    public Pair<List<Point[]>, Double> call(Mat img, Float boxThresh, Float unclipRatio, CancellationToken token)
+            throws OrtException {
         long startTime = System.nanoTime(); // 记录开始时间 (纳秒)
 
         if (img == null || img.empty()) {
             throw new IllegalArgumentException("img is null or empty");
         }
 
+        // 按档位取缓存的预处理操作
+        List<Point[]> filtered = detect(img, getPreprocess(Math.max(img.rows(), img.cols())), boxThresh, unclipRatio, token);
+        if (filtered == null) {
+            return Pair.of(null, 0.0);
+        }
+
+        double elapseSec = (System.nanoTime() - startTime) / 1e9; // 转为秒
+        return Pair.of(filtered, elapseSec);
+    }
+
+    /**
+     * 批量检测多张图像
+     *
+     * @param imgs 输入图像列表
+     * @return (每张图像检测到的文本框，与输入顺序一致, 总处理时间)
+     * @throws OrtException 异常
+     */
+    public Pair<List<List<Point[]>>, Double> callBatch(List<Mat> imgs) throws OrtException {
+        return callBatch(imgs, null, null, null);
+    }
+
+    /**
+     * 批量检测多张图像：预处理后输入形状相同的图像合并为一个 [N, 3, H, W] 张量推理（每批最多 detBatchNum 张），
+     * 输出 [N, 1, H, W] 的每一张概率图并行后处理。适合尺寸相同的票据、表单，或配合 shapeBuckets 使用
+     *
+     * @param imgs        输入图像列表
+     * @param boxThresh   最低得分阈值，为 null 时使用配置值
+     * @param unclipRatio 扩张比率，为 null 时使用配置值
+     * @param token       取消令牌，可为 null
+     * @return (每张图像检测到的文本框，与输入顺序一致，预处理尺寸无效的图像为 null, 总处理时间)
+     * @throws CancellationToken.CancelledException 检测过程中被取消
+     */
+    public Pair<List<List<Point[]>>, Double> callBatch(List<Mat> imgs, Float boxThresh, Float unclipRatio,
+                                                       CancellationToken token) throws OrtException {
+        long startTime = System.nanoTime();
+        for (Mat img : imgs) {
+            if (img == null || img.empty()) {
+                throw new IllegalArgumentException("img is null or empty");
+            }
+        }
+
+        // 按模型输入形状分组，保持输入顺序
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<List<Point[]>> results = new ArrayList<>(imgs.size());
+        for (int i = 0; i < imgs.size(); i++) {
+            Mat img = imgs.get(i);
+            results.add(null);
+            int[] plan = getPreprocess(Math.max(img.rows(), img.cols())).plan(img.rows(), img.cols());
+            if (plan == null) {
+                continue;
+            }
+            String key = img.channels() + "x" + plan[2] + "x" + plan[3];
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> group : groups.values()) {
+            for (int beg = 0; beg < group.size(); beg += batchNum) {
+                if (token != null) {
+                    token.throwIfCancelled();
+                }
+                List<Integer> batch = group.subList(beg, Math.min(group.size(), beg + batchNum));
+                List<List<Point[]>> batchBoxes = detectBatch(imgs, batch, boxThresh, unclipRatio, token);
+                for (int k = 0; k < batch.size(); k++) {
+                    results.set(batch.get(k), batchBoxes.get(k));
+                }
+            }
+        }
+
+        double elapseSec = (System.nanoTime() - startTime) / 1e9;
+        return Pair.of(results, elapseSec);
+    }
+
+    /**
+     * 将输入形状相同的一批图像写入同一个输入 buffer，一次推理后后处理每张概率图（有 workerExecutor 时并行）
+     */
+    private List<List<Point[]>> detectBatch(List<Mat> imgs, List<Integer> batch, Float boxThresh, Float unclipRatio,
+                                            CancellationToken token) throws OrtException {
+        int n = batch.size();
+        Mat first = imgs.get(batch.get(0));
+        DetPreProcess firstOp = getPreprocess(Math.max(first.rows(), first.cols()));
+        int[] firstPlan = firstOp.plan(first.rows(), first.cols());
+        long[] shape = new long[]{n, first.channels(), firstPlan[2], firstPlan[3]};
+        int sampleSize = (int) (shape[1] * shape[2] * shape[3]);
+        int plane = (int) (shape[2] * shape[3]);
+        float thresh = boxThresh == null ? postprocessOp.boxThresh : boxThresh;
+        float ratio = unclipRatio == null ? postprocessOp.unclipRatio : unclipRatio;
+
+        OrtInferSession infer = inferPool.borrow();
+        try {
+            // 每张图像写入 buffer 中各自的切片
+            Buffer input = infer.acquireModelInput(shape);
+            int[][] validSizes = new int[n][];
+            for (int k = 0; k < n; k++) {
+                Mat img = imgs.get(batch.get(k));
+                Buffer sample = sliceOf(input, k * sampleSize, sampleSize);
+                Triple<Buffer, long[], int[]> prepro = getPreprocess(Math.max(img.rows(), img.cols()))
+                        .call(img, s -> sample);
+                validSizes[k] = prepro.getRight();
+            }
+
+            FloatTensor preds = infer.runFlat(input, shape, token);
+            FloatBuffer probMaps = preds.getData();
+            long[] sliceShape = new long[]{1, 1, shape[2], shape[3]};
+
+            // 各张概率图互不相关，有线程池时在检测器自己的线程池上并行后处理，否则顺序处理；
+            // 输出 buffer 属于当前会话，全部完成后再归还
+            List<Callable<List<Point[]>>> tasks = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                Mat img = imgs.get(batch.get(k));
+                FloatTensor pred = new FloatTensor((FloatBuffer) sliceOf(probMaps, k * plane, plane), sliceShape);
+                int[] validSize = validSizes[k];
+                tasks.add(() -> {
+                    DBPostProcess.ResultBundle resultBundle = postprocessOp.call(pred, validSize[0], validSize[1],
+                            img.rows(), img.cols(), thresh, ratio, token);
+                    return filterTagDetRes(resultBundle.getBoxes(), new int[]{img.rows(), img.cols()});
+                });
+            }
+            return runAll(tasks);
+        } finally {
+            inferPool.release(infer);
+        }
+    }
+
+    /**
+     * 取 buffer 中 [offset, offset + length) 的切片，切片下标从 0 开始
+     */
+    private static Buffer sliceOf(Buffer buffer, int offset, int length) {
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer dup = ((ShortBuffer) buffer).duplicate();
+            dup.position(offset).limit(offset + length);
+            return dup.slice();
+        }
+        FloatBuffer dup = ((FloatBuffer) buffer).duplicate();
+        dup.position(offset).limit(offset + length);
+        return dup.slice();
+    }
+
+    /**
+     * 是否启用了分块检测，且图像超过分块边长
+     */
+    public boolean shouldTile(int imgHeight, int imgWidth) {
+        return tileSize > 0 && Math.max(imgHeight, imgWidth) > tileSize;
+    }
+
+    /**
+     * 分块检测：按原分辨率将图像切成相互重叠的分块，在会话池上并行检测，
+     * 再合并重叠区域内重复或被分块边界切断的文本框。单次推理的张量大小以分块边长为上限。
+     * 未配置 tileSize 或图像不超过分块边长时等同于 {@link #call(Mat, Float, Float, CancellationToken)}
+     *
+     * @param img         输入图像
+     * @param boxThresh   最低得分阈值，为 null 时使用配置值
+     * @param unclipRatio 扩张比率，为 null 时使用配置值
+     * @param token       取消令牌，可为 null
+     * @return (检测到的文本框, 处理时间)
+     * @throws CancellationToken.CancelledException 检测过程中被取消
+     */
+    public Pair<List<Point[]>, Double> callTiled(Mat img, Float boxThresh, Float unclipRatio, CancellationToken token)
+            throws OrtException {
+        if (img == null || img.empty()) {
+            throw new IllegalArgumentException("img is null or empty");
+        }
+        if (!shouldTile(img.rows(), img.cols())) {
+            return call(img, boxThresh, unclipRatio, token);
+        }
+        long startTime = System.nanoTime();
+
+        List<Rect> tiles = tileRects(img.rows(), img.cols(), tileSize, tileOverlap);
+        List<Callable<List<Point[]>>> tasks = new ArrayList<>(tiles.size());
+        for (Rect tile : tiles) {
+            tasks.add(() -> detectTile(img, tile, boxThresh, unclipRatio, token));
+        }
+        List<List<Point[]>> tileBoxes = runAll(tasks);
+
+        List<Point[]> merged = TileBoxMerger.merge(tiles, tileBoxes, tileOverlap);
+        // 合并后的框重新排序顶点
+        List<Point[]> filtered = filterTagDetRes(merged, new int[]{img.rows(), img.cols()});
+
+        double elapseSec = (System.nanoTime() - startTime) / 1e9;
+        return Pair.of(filtered, elapseSec);
+    }
+
+    /**
+     * 执行一组任务并按顺序返回结果：有线程池且任务多于 1 个时在 workerExecutor 上并行执行，否则在当前线程依次执行
+     * 任一任务失败时取消尚未开始的任务，并原样抛出其异常
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws OrtException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (workerExecutor == null || tasks.size() < 2) {
+            try {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } catch (OrtException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(workerExecutor.submit(task));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待并行任务时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OrtException) {
+                throw (OrtException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            // 失败或取消时不再执行尚未开始的任务
+            for (Future<T> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 检测单个分块，返回原图坐标下的文本框
+     */
+    private List<Point[]> detectTile(Mat img, Rect tile, Float boxThresh, Float unclipRatio, CancellationToken token)
+            throws OrtException {
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+        Mat roi = img.submat(tile);
+        List<Point[]> boxes;
+        try {
+            boxes = detect(roi, tilePreprocessOp, boxThresh, unclipRatio, token);
+        } finally {
+            roi.release();
+        }
+        if (boxes == null) {
+            return new ArrayList<>();
+        }
+        for (Point[] box : boxes) {
+            for (Point p : box) {
+                p.x += tile.x;
+                p.y += tile.y;
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * 计算分块区域：每个方向按 (tileSize - overlap) 步进，最后一块与图像边缘对齐，
+     * 使所有分块尺寸相同（图像某一边不足 tileSize 时该方向只有一块）
+     */
+    static List<Rect> tileRects(int height, int width, int tileSize, int overlap) {
+        int[] ys = tileStarts(height, tileSize, overlap);
+        int[] xs = tileStarts(width, tileSize, overlap);
+        int tileH = Math.min(height, tileSize);
+        int tileW = Math.min(width, tileSize);
+        List<Rect> tiles = new ArrayList<>(ys.length * xs.length);
+        for (int y : ys) {
+            for (int x : xs) {
+                tiles.add(new Rect(x, y, tileW, tileH));
+            }
+        }
+        return tiles;
+    }
+
+    private static int[] tileStarts(int length, int tileSize, int overlap) {
+        if (length <= tileSize) {
+            return new int[]{0};
+        }
+        int stride = Math.max(1, tileSize - overlap);
+        int count = (length - tileSize + stride - 1) / stride + 1;
+        int[] starts = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = Math.min(i * stride, length - tileSize);
+        }
+        return starts;
+    }
+
+    /**
+     * 预处理、推理、后处理并过滤文本框
+     *
+     * @return 文本框，预处理得到的尺寸无效时返回 null
+     */
+    private List<Point[]> detect(Mat img, DetPreProcess preprocessOp, Float boxThresh, Float unclipRatio,
+                                 CancellationToken token) throws OrtException {
         // 原图的尺寸
         int oriHeight = img.rows();
         int oriWidth = img.cols();
 
-        // 初始化预处理操作
-        this.preprocessOp = getPreprocess(Math.max(oriHeight, oriWidth));
+        // 借出一个推理会话，输出 buffer 属于该会话，后处理完成后再归还
+        OrtInferSession infer = inferPool.borrow();
+        DBPostProcess.ResultBundle resultBundle;
+        try {
+            // 执行预处理 => 直接写入会话内按形状复用的输入 buffer
+            Triple<Buffer, long[], int[]> preproImg = preprocessOp.call(img, infer::acquireModelInput);
+            if (preproImg == null) {
+                return null;
+            }
 
-        // 执行预处理 => 返回 float[][][][] 或直接是 ONNX 的输入
-        float[][][][] preproImg = this.preprocessOp.call(img);
-        if (preproImg == null) {
-            return Pair.of(null, 0.0);
+            // 执行 ONNX 推理
+            // preds 形状假设是 [1, 1, H, W]
+            FloatTensor preds = infer.runFlat(preproImg.getLeft(), preproImg.getMiddle(), token);
+            // 把 preds 传给后处理，补齐档位时只处理左上角的有效区域
+            int[] validSize = preproImg.getRight();
+            resultBundle = postprocessOp.call(preds, validSize[0], validSize[1], oriHeight, oriWidth,
+                    boxThresh == null ? postprocessOp.boxThresh : boxThresh,
+                    unclipRatio == null ? postprocessOp.unclipRatio : unclipRatio, token);
+        } finally {
+            inferPool.release(infer);
         }
 
-        // 执行 ONNX 推理
-        // preds 形状假设是 [1, 1, H, W]
-        float[][][][] preds = (float[][][][]) infer.run(preproImg);
-        // 把 preds 传给后处理
-        DBPostProcess.ResultBundle resultBundle = postprocessOp.call(preds, oriHeight, oriWidth);
-
         // resultBundle 里包含 (boxes, scores)
         List<Point[]> dtBoxes = resultBundle.getBoxes();
 //        List<Float> dtScores = resultBundle.getScores();
 
         // 过滤文本框
-        List<Point[]> filtered = filterTagDetRes(dtBoxes, new int[]{oriHeight, oriWidth});
+        return filterTagDetRes(dtBoxes, new int[]{oriHeight, oriWidth});
+    }
 
-        double elapseSec = (System.nanoTime() - startTime) / 1e9; // 转为秒
-        return Pair.of(filtered, elapseSec);
+    /**
+     * 计算指定尺寸的图像经过预处理后的模型输入形状
+     *
+     * @param imgHeight 图像高
+     * @param imgWidth  图像宽
+     * @return [1, 3, H, W]，尺寸无效时返回 null
+     */
+    public long[] inputShape(int imgHeight, int imgWidth) {
+        if (shouldTile(imgHeight, imgWidth)) {
+            // 分块检测时模型只会看到分块的形状
+            int[] plan = tilePreprocessOp.plan(Math.min(imgHeight, tileSize), Math.min(imgWidth, tileSize));
+            return plan == null ? null : new long[]{1, 3, plan[2], plan[3]};
+        }
+        int[] plan = getPreprocess(Math.max(imgHeight, imgWidth)).plan(imgHeight, imgWidth);
+        return plan == null ? null : new long[]{1, 3, plan[2], plan[3]};
     }
 
     /**
-     * 根据图像的最大边长计算预处理对象
+     * 预热指定输入形状
+     *
+     * @return 每次运行的耗时（秒）
+     */
+    public List<Double> warmUp(long[] shape, int iterations) throws OrtException {
+        return inferPool.warmUp(shape, iterations);
+    }
+
+    /**
+     * 结束 profiling 并汇总算子耗时，需在配置中设置 profilingDir
+     *
+     * @param topN 返回耗时最多的前 N 个算子
+     */
+    public ProfileSummary endProfiling(int topN) throws OrtException, IOException {
+        return ProfileParser.summarize("det", inferPool.endProfiling(), topN);
+    }
+
+    /**
+     * 实际生效的执行设备，按优先级排列
+     */
+    public List<String> getProviders() {
+        return inferPool.primary().getProviders();
+    }
+
+    /**
+     * 分块的输入形状档位：配置的档位加上分块本身对齐到 32 后的方形档位，
+     * 右侧、下方不足一块的边缘分块补齐到能容纳它的最小档位，模型只会看到这几种形状。
+     * 分块保持原分辨率，不按 limitType/limitSideLen 缩放，否则 "min" 会把窄边缘条放大到超过分块大小
+     *
+     * @param tileSize     分块边长
+     * @param shapeBuckets 配置的输入形状档位，可为 null
+     */
+    static int[][] tileBuckets(int tileSize, int[][] shapeBuckets) {
+        int aligned = Math.max(32, Math.round(tileSize / 32.0f) * 32);
+        int count = shapeBuckets == null ? 0 : shapeBuckets.length;
+        int[][] buckets = Arrays.copyOf(shapeBuckets == null ? new int[0][] : shapeBuckets, count + 1);
+        buckets[count] = new int[]{aligned, aligned};
+        return buckets;
+    }
+
+    /**
+     * 根据图像的最大边长选择预处理对象
      * 模拟 Python  get_preprocess
      *
      * @param maxWh 图像的最大边
      * @return DetPreProcess
      */
     private DetPreProcess getPreprocess(int maxWh) {
-        int actualLimitSideLen;
-        if ("min".equalsIgnoreCase(this.limitType)) {
-            actualLimitSideLen = this.limitSideLen;
-        } else {
-            // if max_wh < 960 => 960; elif <1500 =>1500; else=>2000
-            if (maxWh < 960) {
-                actualLimitSideLen = 960;
-            } else if (maxWh < 1500) {
-                actualLimitSideLen = 1500;
-            } else {
-                actualLimitSideLen = 2000;
+        if (preprocessOps.length == 1) {
+            return preprocessOps[0];
+        }
+        // if max_wh < 960 => 960; elif <1500 =>1500; else=>2000
+        for (int i = 0; i < MAX_SIDE_BUCKETS.length - 1; i++) {
+            if (maxWh < MAX_SIDE_BUCKETS[i]) {
+                return preprocessOps[i];
             }
         }
-        return new DetPreProcess(actualLimitSideLen, this.limitType);
+        return preprocessOps[MAX_SIDE_BUCKETS.length - 1];
     }
 
     /**
@@ -219,4 +663,16 @@ public class TextDetector {
         return Math.hypot(dx, dy);
     }
 
+    /**
+     * 归还共享的推理会话池
+     */
+    @Override
+    public void close() {
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+        postprocessOp.close();
+        OrtSessionRegistry.release(inferPool);
+    }
+
 }
@@ -0,0 +1,197 @@
+package io.github.hzkitty.ch_ppocr_det;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.RotatedRect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并分块检测的文本框
+ * <p>
+ * 相邻分块在重叠区域会各自检出同一段文本，跨越分块边界的长文本行也会被切成两段。
+ * 两个来自不同分块的框，若在两块公共区域内的部分基本重合，即视为同一文本，合并为包含两者的最小外接矩形。
+ * 候选框通过均匀网格索引查找，只比较落在相同网格中的框。
+ */
+public class TileBoxMerger {
+
+    // 公共区域内交集面积占较小者面积的比例达到该值即合并
+    private static final double MERGE_OVERLAP = 0.5;
+
+    private TileBoxMerger() {
+    }
+
+    /**
+     * @param tiles     分块在原图中的区域
+     * @param tileBoxes 每个分块检出的文本框，坐标已换算到原图
+     * @param cellSize  网格边长，通常取分块重叠宽度
+     * @return 合并后的文本框，未合并的框保持原样
+     */
+    public static List<Point[]> merge(List<Rect> tiles, List<List<Point[]>> tileBoxes, int cellSize) {
+        List<Point[]> boxes = new ArrayList<>();
+        List<Integer> tileOf = new ArrayList<>();
+        for (int t = 0; t < tileBoxes.size(); t++) {
+            for (Point[] box : tileBoxes.get(t)) {
+                boxes.add(box);
+                tileOf.add(t);
+            }
+        }
+        int n = boxes.size();
+        if (tiles.size() <= 1 || n <= 1) {
+            return boxes;
+        }
+
+        // 每个框的外接矩形 {x0, y0, x1, y1}
+        double[][] bounds = new double[n][];
+        for (int i = 0; i < n; i++) {
+            bounds[i] = bounds(boxes.get(i));
+        }
+
+        // 网格索引：cell -> 覆盖该 cell 的框
+        int cell = Math.max(32, cellSize);
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            double[] b = bounds[i];
+            for (int cy = (int) (b[1] / cell); cy <= (int) (b[3] / cell); cy++) {
+                for (int cx = (int) (b[0] / cell); cx <= (int) (b[2] / cell); cx++) {
+                    grid.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        // 记录框 j 最近一次与哪个框比较过，避免同一对在多个 cell 中重复比较
+        int[] lastChecked = new int[n];
+        Arrays.fill(lastChecked, -1);
+        for (int i = 0; i < n; i++) {
+            double[] b = bounds[i];
+            int tileI = tileOf.get(i);
+            for (int cy = (int) (b[1] / cell); cy <= (int) (b[3] / cell); cy++) {
+                for (int cx = (int) (b[0] / cell); cx <= (int) (b[2] / cell); cx++) {
+                    for (int j : grid.get(cellKey(cx, cy))) {
+                        if (j <= i || lastChecked[j] == i) {
+                            continue;
+                        }
+                        lastChecked[j] = i;
+                        int tileJ = tileOf.get(j);
+                        if (tileI != tileJ && isSameText(bounds[i], bounds[j], tiles.get(tileI), tiles.get(tileJ))) {
+                            union(parent, i, j);
+                        }
+                    }
+                }
+            }
+        }
+
+        // 按首次出现的顺序输出，每组合并为最小外接矩形
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(i);
+        }
+        List<Point[]> merged = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            if (group.size() == 1) {
+                merged.add(boxes.get(group.get(0)));
+                continue;
+            }
+            List<Point> points = new ArrayList<>(group.size() * 4);
+            for (int i : group) {
+                points.addAll(Arrays.asList(boxes.get(i)));
+            }
+            merged.add(minAreaBox(points));
+        }
+        return merged;
+    }
+
+    /**
+     * 将两个框裁剪到两块的公共区域后比较：交集占较小者面积的比例达到阈值即为同一文本
+     */
+    private static boolean isSameText(double[] a, double[] b, Rect tileA, Rect tileB) {
+        double sx0 = Math.max(tileA.x, tileB.x);
+        double sy0 = Math.max(tileA.y, tileB.y);
+        double sx1 = Math.min(tileA.x + tileA.width, tileB.x + tileB.width);
+        double sy1 = Math.min(tileA.y + tileA.height, tileB.y + tileB.height);
+        if (sx1 <= sx0 || sy1 <= sy0) {
+            return false;
+        }
+        double[] ca = clip(a, sx0, sy0, sx1, sy1);
+        double[] cb = clip(b, sx0, sy0, sx1, sy1);
+        double areaA = area(ca);
+        double areaB = area(cb);
+        if (areaA <= 0 || areaB <= 0) {
+            return false;
+        }
+        double iw = Math.min(ca[2], cb[2]) - Math.max(ca[0], cb[0]);
+        double ih = Math.min(ca[3], cb[3]) - Math.max(ca[1], cb[1]);
+        if (iw <= 0 || ih <= 0) {
+            return false;
+        }
+        return iw * ih >= MERGE_OVERLAP * Math.min(areaA, areaB);
+    }
+
+    private static double[] bounds(Point[] box) {
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = 0, y1 = 0;
+        for (Point p : box) {
+            x0 = Math.min(x0, p.x);
+            y0 = Math.min(y0, p.y);
+            x1 = Math.max(x1, p.x);
+            y1 = Math.max(y1, p.y);
+        }
+        return new double[]{Math.max(0, x0), Math.max(0, y0), x1, y1};
+    }
+
+    private static double[] clip(double[] b, double x0, double y0, double x1, double y1) {
+        return new double[]{Math.max(b[0], x0), Math.max(b[1], y0), Math.min(b[2], x1), Math.min(b[3], y1)};
+    }
+
+    private static double area(double[] b) {
+        double w = b[2] - b[0];
+        double h = b[3] - b[1];
+        return w > 0 && h > 0 ? w * h : 0;
+    }
+
+    private static Point[] minAreaBox(List<Point> points) {
+        MatOfPoint2f mat = new MatOfPoint2f();
+        mat.fromList(points);
+        RotatedRect rect = Imgproc.minAreaRect(mat);
+        mat.release();
+        Mat corners = new Mat();
+        Imgproc.boxPoints(rect, corners);
+        Point[] box = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            box[i] = new Point(corners.get(i, 0)[0], corners.get(i, 1)[0]);
+        }
+        corners.release();
+        return box;
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra != rb) {
+            parent[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.github.hzkitty.ch_ppocr_rec;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -13,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.WordBoxInfo;
 
 /**
@@ -125,6 +127,54 @@ public class CTCLabelDecode {
         }
 
         // 2. 进行文本解码
+        return this.decodeResults(predsIdx, predsProb, returnWordBox, whRatioList, maxWhRatio);
+    }
+
+    /**
+     * 解码入口方法（扁平版本），直接按下标读取模型输出的一维 buffer
+     *
+     * @param preds         预测输出 (形状为 batchSize x timeSteps x numClasses)
+     * @param returnWordBox 是否返回字符分组、坐标等附加信息
+     * @param whRatioList   与图像宽高比相关的列表
+     * @param maxWhRatio    全局最大宽高比
+     * @return 解码结果列表
+     */
+    public List<DecodeResult> call(FloatTensor preds, boolean returnWordBox, List<Float> whRatioList, float maxWhRatio) {
+        FloatBuffer data = preds.getData();
+        int batchSize = preds.getDim(0);
+        int timeSteps = preds.getDim(1);
+        int numClasses = preds.getDim(2);
+
+        int[][] predsIdx = new int[batchSize][timeSteps];
+        float[][] predsProb = new float[batchSize][timeSteps];
+
+        // 循环计算 argmax 和 max，每个时间步对应一段连续的 numClasses 个元素
+        int base = 0;
+        for (int b = 0; b < batchSize; b++) {
+            for (int t = 0; t < timeSteps; t++) {
+                float maxVal = Float.NEGATIVE_INFINITY;
+                int maxIndex = -1;
+                for (int c = 0; c < numClasses; c++) {
+                    float val = data.get(base + c);
+                    if (val > maxVal) {
+                        maxVal = val;
+                        maxIndex = c;
+                    }
+                }
+                predsIdx[b][t] = maxIndex;
+                predsProb[b][t] = maxVal;
+                base += numClasses;
+            }
+        }
+
+        return this.decodeResults(predsIdx, predsProb, returnWordBox, whRatioList, maxWhRatio);
+    }
+
+    /**
+     * 根据 argmax 结果解码，并按需修正 wordBox 信息
+     */
+    private List<DecodeResult> decodeResults(int[][] predsIdx, float[][] predsProb, boolean returnWordBox,
+                                             List<Float> whRatioList, float maxWhRatio) {
         List<DecodeResult> decodeResults = this.decode(predsIdx, predsProb, returnWordBox, true);
 
         // 3. 若需要对 wordBox 做进一步处理
@@ -172,7 +222,7 @@ public class CTCLabelDecode {
     /**
      * 从文件中读取字符列表
      */
-    private List<String> readCharacterFile(String characterPath) {
+    public static List<String> readCharacterFile(String characterPath) {
         List<String> characterList = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(
                 new InputStreamReader(Files.newInputStream(Paths.get(characterPath)), StandardCharsets.UTF_8))) {
@@ -7,27 +7,47 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import ai.onnxruntime.OrtException;
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.OcrConfig;
 import io.github.hzkitty.entity.OrtInferConfig;
 import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProfileSummary;
 import io.github.hzkitty.entity.TupleResult;
+import io.github.hzkitty.utils.CancellationToken;
+import io.github.hzkitty.utils.Float16;
 import io.github.hzkitty.utils.OrtInferSession;
+import io.github.hzkitty.utils.OrtInferSessionPool;
+import io.github.hzkitty.utils.OrtSessionRegistry;
+import io.github.hzkitty.utils.ProfileParser;
 
-public class TextRecognizer {
+public class TextRecognizer implements AutoCloseable {
 
-    private final OrtInferSession session;
+    private final OrtInferSessionPool sessionPool;
     private final CTCLabelDecode postprocessOp;
 
     private final int recBatchNum;         // 识别批处理大小
     private final int[] recImageShape;     // 识别输入形状 (如 [3, 32, 320])
+    // 每个线程复用的像素读取数组，大小为一个文本行输入；超过上限（4MB）的超长文本行每次单独分配，不长期占用
+    private final ThreadLocal<byte[]> pixelScratch = new ThreadLocal<>();
+    private static final int MAX_SCRATCH_BYTES = 4 * 1024 * 1024;
+    // 归一化系数：(value / 255.0 - 0.5) / 0.5 = value * NORM_SCALE + NORM_SHIFT
+    private static final float NORM_SCALE = 2.0f / 255.0f;
+    private static final float NORM_SHIFT = -1.0f;
+    // 8 位像素只有 256 种取值，FP16 模型按查表写入归一化后的 half
+    private static final short[] HALF_TABLE = halfTable();
 
     /**
      * 构造方法
@@ -35,6 +55,16 @@ public class TextRecognizer {
      * @param recConfig 配置字典，包含模型和识别参数
      */
     public TextRecognizer(Context context, OcrConfig.RecConfig recConfig) {
+        this(context, recConfig, null);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param recConfig       配置字典，包含模型和识别参数
+     * @param characterLoader 字符文件的加载结果，可在加载模型的同时预先读取；为 null 时按 recKeysPath 读取
+     */
+    public TextRecognizer(Context context, OcrConfig.RecConfig recConfig, Supplier<List<String>> characterLoader) {
         // 初始化推理会话
         OrtInferConfig ortInferConfig = new OrtInferConfig();
         ortInferConfig.setIntraOpNumThreads(recConfig.intraOpNumThreads);
@@ -42,19 +72,33 @@ public class TextRecognizer {
         ortInferConfig.setUseCuda(recConfig.useCuda);
         ortInferConfig.setDeviceId(recConfig.deviceId);
         ortInferConfig.setUseDml(recConfig.useDml);
-        ortInferConfig.setModelPath(recConfig.modelPath);
+        ortInferConfig.setModelPath(OrtInferConfig.selectModelPath(recConfig.modelPath, recConfig.quantizedModelPath, recConfig.useQuantized));
         ortInferConfig.setUseArena(recConfig.useArena);
-        // 1. 创建 ONNX 推理会话
-        this.session = new OrtInferSession(context, ortInferConfig);
+        ortInferConfig.setSessionPoolSize(recConfig.sessionPoolSize);
+        ortInferConfig.setOptimizedModelDir(recConfig.optimizedModelDir);
+        ortInferConfig.setOptimizedModelFormat(recConfig.optimizedModelFormat);
+        ortInferConfig.setLoadFromMemory(recConfig.loadFromMemory);
+        ortInferConfig.setProfilingDir(recConfig.profilingDir);
+        ortInferConfig.setProviders(recConfig.providers);
+        // 1. 创建 ONNX 推理会话池
+        this.sessionPool = OrtSessionRegistry.acquire(context, ortInferConfig);
 
         // 2. 判断是否可从会话内获取字符表
         List<String> character = null;
-        if (this.session.haveKey("character")) {
-            character = this.session.getCharacterList("character");
+        OrtInferSession session = this.sessionPool.primary();
+        if (session.haveKey("character")) {
+            character = session.getCharacterList("character");
         }
 
         // 3. 获取自定义字符文件路径
         String characterPath = recConfig.getRecKeysPath();
+        if ((character == null || character.isEmpty()) && characterLoader != null) {
+            character = characterLoader.get();
+        }
+        // 量化工具可能丢弃模型的 metadata，此时从对应的 FP32 模型读取字符表
+        if ((character == null || character.isEmpty()) && characterPath == null && recConfig.useQuantized) {
+            character = readCharacterList(context, recConfig);
+        }
 
         // 4. 初始化 CTC 后处理类
         this.postprocessOp = new CTCLabelDecode(character, characterPath);
@@ -65,6 +109,57 @@ public class TextRecognizer {
         this.recImageShape = recConfig.getRecImgShape();
     }
 
+    /**
+     * 从 FP32 模型的 metadata 读取字符表，读取后立即释放会话
+     */
+    private static List<String> readCharacterList(Context context, OcrConfig.RecConfig recConfig) {
+        OrtInferConfig ortInferConfig = new OrtInferConfig();
+        ortInferConfig.setIntraOpNumThreads(1);
+        ortInferConfig.setModelPath(recConfig.modelPath);
+        ortInferConfig.setLoadFromMemory(recConfig.loadFromMemory);
+        try (OrtInferSession session = new OrtInferSession(context, ortInferConfig)) {
+            return session.getCharacterList("character");
+        }
+    }
+
+    /**
+     * 指定批大小与宽度的模型输入形状
+     *
+     * @param batchSize 批大小，小于 1 时使用配置的 recBatchNum
+     * @param imgWidth  输入宽度，小于 1 时使用配置的 recImgShape 宽度
+     * @return [N, C, H, W]
+     */
+    public long[] inputShape(int batchSize, int imgWidth) {
+        int n = batchSize < 1 ? recBatchNum : batchSize;
+        int w = imgWidth < 1 ? recImageShape[2] : imgWidth;
+        return new long[]{n, recImageShape[0], recImageShape[1], w};
+    }
+
+    /**
+     * 预热指定输入形状
+     *
+     * @return 每次运行的耗时（秒）
+     */
+    public List<Double> warmUp(long[] shape, int iterations) throws OrtException {
+        return sessionPool.warmUp(shape, iterations);
+    }
+
+    /**
+     * 结束 profiling 并汇总算子耗时，需在配置中设置 profilingDir
+     *
+     * @param topN 返回耗时最多的前 N 个算子
+     */
+    public ProfileSummary endProfiling(int topN) throws OrtException, IOException {
+        return ProfileParser.summarize("rec", sessionPool.endProfiling(), topN);
+    }
+
+    /**
+     * 实际生效的执行设备，按优先级排列
+     */
+    public List<String> getProviders() {
+        return sessionPool.primary().getProviders();
+    }
+
     /**
      * 进行文本识别
      *
@@ -73,6 +168,20 @@ public class TextRecognizer {
      * @return (识别结果列表, 总耗时)
      */
     public Pair<List<TupleResult>, Double> call(List<Mat> imgList, boolean returnWordBox) throws OrtException {
+        return call(imgList, returnWordBox, null);
+    }
+
+    /**
+     * 进行文本识别，可通过取消令牌中止
+     * 被取消时返回已完成批次的结果，其余图像的识别结果为空文本
+     *
+     * @param imgList       多张图像的列表
+     * @param returnWordBox 是否返回单词边界信息
+     * @param token         取消令牌，可为 null
+     * @return (识别结果列表, 总耗时)
+     */
+    public Pair<List<TupleResult>, Double> call(List<Mat> imgList, boolean returnWordBox, CancellationToken token)
+            throws OrtException {
         // 若只有单张图，可封装成 List
         if (imgList == null || imgList.isEmpty()) {
             return Pair.of(Collections.emptyList(), 0.0);
@@ -100,12 +209,37 @@ public class TextRecognizer {
             recRes[i] = new TupleResult("", 0.0f, null);
         }
 
-        // 4. 批量处理
+        // 4. 批量处理，借出一个推理会话，整个调用期间独占
+        OrtInferSession session = sessionPool.borrow();
+        double[] totalElapse = {0.0};
+        try {
+            recognizeBatches(session, imgList, indices, recRes, returnWordBox, token, totalElapse);
+        } catch (CancellationToken.CancelledException e) {
+            // 保留已完成批次的结果，由调用方根据令牌判断是否为部分结果
+        } finally {
+            sessionPool.release(session);
+        }
+
+        // 返回 (识别结果, 总耗时)
+        List<TupleResult> resultList = Arrays.asList(recRes);
+        return Pair.of(resultList, totalElapse[0]);
+    }
+
+    /**
+     * 分批执行识别推理，并将结果写回 recRes 对应位置
+     *
+     * @return 推理总耗时（秒）
+     */
+    private void recognizeBatches(OrtInferSession session, List<Mat> imgList, Integer[] indices, TupleResult[] recRes,
+                                  boolean returnWordBox, CancellationToken token, double[] totalElapse) throws OrtException {
         int imgNum = imgList.size();
-        double totalElapse = 0.0;
 
         for (int beg = 0; beg < imgNum; beg += recBatchNum) {
             int end = Math.min(imgNum, beg + recBatchNum);
+            // 批次之间检查是否已取消
+            if (token != null) {
+                token.throwIfCancelled();
+            }
 
             // 获取网络输入形状(如 3, 32, 320)
             int imgC = recImageShape[0];
@@ -128,27 +262,23 @@ public class TextRecognizer {
                 whRatioList.add(whRatio);
             }
 
-            // 5. 归一化 & 调整图像大小
-            List<float[][][]> normImgBatchList = new ArrayList<>();
+            // 5. 归一化 & 调整图像大小，直接写入 [batchSize, channels, height, width] 的输入 buffer
+            int batchSize = end - beg;
+            int batchW = (int) (imgH * maxWhRatio);
+            int sampleSize = imgC * imgH * batchW;
+            long[] shape = new long[]{batchSize, imgC, imgH, batchW};
+            Buffer inputBuffer = session.acquireModelInput(shape);
             for (int i = beg; i < end; i++) {
                 int idx = indices[i];
                 Mat curImg = imgList.get(idx);
-                float[][][] normImg = resizeNormImg(curImg, maxWhRatio);
-                normImgBatchList.add(normImg);
-            }
-
-            // 将批次图像拼接成 [batchSize, channels, height, width]
-            int batchSize = normImgBatchList.size();
-            float[][][][] normImgBatch = new float[batchSize][imgC][imgH][];
-            for (int bIndex = 0; bIndex < batchSize; bIndex++) {
-                normImgBatch[bIndex] = normImgBatchList.get(bIndex);
+                resizeNormImg(curImg, batchW, inputBuffer, (i - beg) * sampleSize);
             }
 
             // 6. 推理
             long startTime = System.currentTimeMillis();
-            float[][][] preds = (float[][][]) session.run(normImgBatch);
+            FloatTensor preds = session.runFlat(inputBuffer, shape, token);
             double elapseSec = (System.currentTimeMillis() - startTime) / 1000.0;
-            totalElapse += elapseSec;
+            totalElapse[0] += elapseSec;
 
             // 7. 后处理
             List<DecodeResult> recResult = postprocessOp.call(preds, returnWordBox, whRatioList, maxWhRatio);
@@ -160,10 +290,6 @@ public class TextRecognizer {
                 recRes[origIdx] = new TupleResult(dr.getText(), dr.getConfidence(), dr.getWordBoxInfo());
             }
         }
-
-        // 返回 (识别结果, 总耗时)
-        List<TupleResult> resultList = Arrays.asList(recRes);
-        return Pair.of(resultList, totalElapse);
     }
 
     /**
@@ -176,16 +302,37 @@ public class TextRecognizer {
     public float[][][] resizeNormImg(Mat imgMat, float maxWhRatio) {
         int imgChannel = recImageShape[0];
         int imgHeight = recImageShape[1];
-//        int imgWidth = recImageShape[2];
+        int imgWidth = (int) (imgHeight * maxWhRatio);
+        FloatBuffer buffer = FloatBuffer.allocate(imgChannel * imgHeight * imgWidth);
+        resizeNormImg(imgMat, imgWidth, buffer, 0);
+
+        float[][][] paddingIm = new float[imgChannel][imgHeight][imgWidth];
+        for (int c = 0; c < imgChannel; c++) {
+            for (int i = 0; i < imgHeight; i++) {
+                buffer.position((c * imgHeight + i) * imgWidth);
+                buffer.get(paddingIm[c][i]);
+            }
+        }
+        return paddingIm;
+    }
+
+    /**
+     * 调整和归一化图像，按 CHW 顺序写入 buffer，右侧不足部分补 0。
+     *
+     * @param imgMat   OpenCV Mat 格式的图像
+     * @param imgWidth 当前批次的输入宽度，由最大宽高比决定
+     * @param buffer   输入 buffer，FloatBuffer 或 FP16 模型的 ShortBuffer
+     * @param offset   该样本在 buffer 中的起始下标
+     */
+    private void resizeNormImg(Mat imgMat, int imgWidth, Buffer buffer, int offset) {
+        int imgChannel = recImageShape[0];
+        int imgHeight = recImageShape[1];
 
         // 确保输入图像的通道数与预期一致
         if (imgMat.channels() != imgChannel) {
             throw new IllegalArgumentException("输入图像的通道数与预期不符");
         }
 
-        // 计算新的图像宽度
-        int imgWidth = (int) (imgHeight * maxWhRatio);
-
         // 获取原图的高度和宽度
         int originalHeight = imgMat.rows();
         int originalWidth = imgMat.cols();
@@ -204,37 +351,83 @@ public class TextRecognizer {
         // 调整图像大小
         Size size = new Size(resizedW, imgHeight);
         Mat resizedMat = new Mat();
-        Imgproc.resize(imgMat, resizedMat, size);
-
-        // 将图像转换为浮点类型
-        Mat resizedFloatMat = new Mat();
-        resizedMat.convertTo(resizedFloatMat, CvType.CV_32FC(imgChannel));
+        byte[] data = pixelScratch(imgHeight * resizedW * imgChannel);
+        try {
+            Imgproc.resize(imgMat, resizedMat, size);
+            // 非 8 位图像先转为 8 位，与 Python 版的 uint8 输入一致
+            if (resizedMat.depth() != CvType.CV_8U) {
+                resizedMat.convertTo(resizedMat, CvType.CV_8UC(imgChannel));
+            }
+            // 一次性读出 HWC 的 8 位像素到线程复用的数组，不生成 float 中间图像
+            resizedMat.get(0, 0, data);
+        } finally {
+            resizedMat.release();
+        }
 
-        // 初始化填充后的三维数组，默认值为 0
-        float[][][] paddingIm = new float[imgChannel][imgHeight][imgWidth];
+        // 遍历调整后的图像，归一化后直接写入 buffer（FP16 模型写 half），填充区域写 0
+        // 归一化: (value / 255.0 - 0.5) / 0.5 = value * NORM_SCALE + NORM_SHIFT
+        int plane = imgHeight * imgWidth;
+        if (buffer instanceof ShortBuffer) {
+            ShortBuffer half = (ShortBuffer) buffer;
+            for (int c = 0; c < imgChannel; c++) {
+                int chBase = offset + c * plane;
+                for (int i = 0; i < imgHeight; i++) {
+                    int rowBase = chBase + i * imgWidth;
+                    int srcBase = i * resizedW * imgChannel + c;
+                    for (int j = 0; j < resizedW; j++) {
+                        half.put(rowBase + j, HALF_TABLE[data[srcBase + j * imgChannel] & 0xFF]);
+                    }
+                    for (int j = resizedW; j < imgWidth; j++) {
+                        half.put(rowBase + j, (short) 0);
+                    }
+                }
+            }
+            return;
+        }
+        FloatBuffer floats = (FloatBuffer) buffer;
         for (int c = 0; c < imgChannel; c++) {
+            int chBase = offset + c * plane;
             for (int i = 0; i < imgHeight; i++) {
-                for (int j = 0; j < imgWidth; j++) {
-                    paddingIm[c][i][j] = 0.0f;
+                int rowBase = chBase + i * imgWidth;
+                int srcBase = i * resizedW * imgChannel + c;
+                for (int j = 0; j < resizedW; j++) {
+                    floats.put(rowBase + j, (data[srcBase + j * imgChannel] & 0xFF) * NORM_SCALE + NORM_SHIFT);
+                }
+                for (int j = resizedW; j < imgWidth; j++) {
+                    floats.put(rowBase + j, 0.0f);
                 }
             }
         }
+    }
 
-        // 遍历调整后的图像，并进行归一化处理
-        for (int i = 0; i < imgHeight; i++) {
-            for (int j = 0; j < resizedW; j++) {
-                // 获取当前像素的所有通道值
-                float[] pixel = new float[imgChannel];
-                resizedFloatMat.get(i, j, pixel);
-                for (int c = 0; c < imgChannel; c++) {
-                    // 归一化: (value / 255.0 - 0.5) / 0.5 = value / 255.0 * 2 - 1.0
-                    float normalizedValue = (pixel[c] / 255.0f) * 2.0f - 1.0f;
-                    paddingIm[c][i][j] = normalizedValue;
-                }
+    private static short[] halfTable() {
+        short[] table = new short[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = Float16.toHalf(v * NORM_SCALE + NORM_SHIFT);
+        }
+        return table;
+    }
+
+    /**
+     * 当前线程复用的读取数组，长度不足时扩大
+     */
+    private byte[] pixelScratch(int size) {
+        byte[] data = pixelScratch.get();
+        if (data == null || data.length < size) {
+            data = new byte[size];
+            if (size <= MAX_SCRATCH_BYTES) {
+                pixelScratch.set(data);
             }
         }
+        return data;
+    }
 
-        return paddingIm;
+    /**
+     * 归还共享的推理会话池
+     */
+    @Override
+    public void close() {
+        OrtSessionRegistry.release(sessionPool);
     }
 
 }
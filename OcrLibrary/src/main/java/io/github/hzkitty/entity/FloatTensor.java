@@ -0,0 +1,44 @@
+package io.github.hzkitty.entity;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * 扁平存储的 float 张量：一维数据 + 形状，按行主序 (row-major) 排布
+ */
+public class FloatTensor {
+    private final FloatBuffer data;
+    private final long[] shape;
+
+    public FloatTensor(FloatBuffer data, long[] shape) {
+        this.data = data;
+        this.shape = shape;
+    }
+
+    public FloatBuffer getData() {
+        return data;
+    }
+
+    public long[] getShape() {
+        return shape;
+    }
+
+    /**
+     * 获取指定维度的大小
+     */
+    public int getDim(int axis) {
+        return (int) shape[axis];
+    }
+
+    /**
+     * 按绝对下标读取元素
+     */
+    public float get(int index) {
+        return data.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return "FloatTensor{" + "shape=" + Arrays.toString(shape) + '}';
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.hzkitty.entity;
 
+import java.util.List;
+
 // OCR 主配置类
 public class OcrConfig {
     public GlobalConfig Global = new GlobalConfig(); // 全局配置
@@ -51,8 +53,11 @@ public class OcrConfig {
         public int maxSideLen = 2000; // 最大边长
         public int minSideLen = 30; // 最小边长
         public boolean returnWordBox = false; // 是否返回单词级别的框
-        public int intraOpNumThreads = -1; // 单线程操作线程数
-        public int interOpNumThreads = -1; // 多线程操作线程数
+        public int intraOpNumThreads = -1; // 单线程操作线程数（启用全局线程池时为全局 intra-op 线程数）
+        public int interOpNumThreads = -1; // 多线程操作线程数（启用全局线程池时为全局 inter-op 线程数）
+        public boolean useGlobalThreadPool = false; // 是否所有模型共享进程级线程池，需在创建第一个会话前启用
+        public boolean parallelInit = true; // 是否并行加载检测/分类/识别模型
+        public boolean lazyInit = false; // 是否所有模块都在首次使用时才加载（未启用的模块始终延迟加载）
 
         public String opencvLibPath; // opencv环境依赖dll或so目录
 
@@ -152,6 +157,30 @@ public class OcrConfig {
             this.interOpNumThreads = interOpNumThreads;
         }
 
+        public boolean isUseGlobalThreadPool() {
+            return useGlobalThreadPool;
+        }
+
+        public void setUseGlobalThreadPool(boolean useGlobalThreadPool) {
+            this.useGlobalThreadPool = useGlobalThreadPool;
+        }
+
+        public boolean isParallelInit() {
+            return parallelInit;
+        }
+
+        public void setParallelInit(boolean parallelInit) {
+            this.parallelInit = parallelInit;
+        }
+
+        public boolean isLazyInit() {
+            return lazyInit;
+        }
+
+        public void setLazyInit(boolean lazyInit) {
+            this.lazyInit = lazyInit;
+        }
+
         public String getOpencvLibPath() {
             return opencvLibPath;
         }
@@ -168,7 +197,7 @@ public class OcrConfig {
         public boolean useCuda = false; // 是否使用 CUDA
         public int deviceId = 0; // 显卡编号
         public boolean useDml = false; // 是否使用 DML
-        public String modelPath = "ch_PP-OCRv4_det_infer.onnx"; // 模型路径
+        public String modelPath = "ch_PP-OCRv4_det_infer.onnx"; // 模型路径，支持 .onnx 与 .ort 格式
         public int limitSideLen = 736; // 限制边长
         public String limitType = "min"; // 限制类型
         public float thresh = 0.3f; // 检测阈值
@@ -176,8 +205,20 @@ public class OcrConfig {
         public int maxCandidates = 1000; // 最大候选框数
         public float unclipRatio = 1.6f; // 非极大值抑制后的扩展比例
         public boolean useDilation = true; // 是否使用膨胀操作
-        public String scoreMode = "fast"; // 评分模式
+        public String scoreMode = "fast"; // 评分模式：fast（四边形）、slow（轮廓多边形）、integral（积分图，接近水平的框 O(1) 计分，每个并发调用保留 (H+1)x(W+1) 的 int 积分图）
         public boolean useArena = true; // arena内存池的扩展策略（速度有提升，但内存会剧增，且持续占用，不释放）
+        public int sessionPoolSize = 1; // 会话池大小，即可并发推理的请求数
+        public String optimizedModelDir; // 图优化后模型的缓存目录，设置后冷启动可跳过图优化
+        public String optimizedModelFormat = "onnx"; // 优化模型的缓存格式，onnx 或 ort（ort 加载更快、占用内存更少）
+        public boolean loadFromMemory = false; // assets 中的模型直接读入内存创建会话，省去复制到 cache 目录
+        public String profilingDir; // 算子级 profiling 文件输出目录，为 null 时不启用
+        public List<ProviderConfig> providers; // 执行设备优先级列表，如 xnnpack、cpu，为 null 时按 useCuda/useDml 选择
+        public String quantizedModelPath; // INT8 量化模型路径，支持 .onnx 与 .ort 格式
+        public boolean useQuantized = false; // 是否使用量化模型，为 true 时需设置 quantizedModelPath
+        public int[][] shapeBuckets; // 输入形状档位 {H, W}，如 {{736, 736}, {736, 1280}, {1280, 736}}，设置后补齐到固定形状，为 null 时不补齐
+        public int tileSize = 0; // 分块检测的块边长，大于 0 时超过 maxSideLen 的图片不再缩小，按原分辨率分块检测
+        public int tileOverlap = 128; // 相邻分块的重叠像素，应大于文字高度，保证被切断的文本行在两块中有重叠部分可以合并
+        public int detBatchNum = 4; // 批量检测时单次推理的最大图片数
 
         public int getIntraOpNumThreads() {
             return intraOpNumThreads;
@@ -298,6 +339,102 @@ public class OcrConfig {
         public void setUseArena(boolean useArena) {
             this.useArena = useArena;
         }
+
+        public int getSessionPoolSize() {
+            return sessionPoolSize;
+        }
+
+        public void setSessionPoolSize(int sessionPoolSize) {
+            this.sessionPoolSize = sessionPoolSize;
+        }
+
+        public String getOptimizedModelDir() {
+            return optimizedModelDir;
+        }
+
+        public void setOptimizedModelDir(String optimizedModelDir) {
+            this.optimizedModelDir = optimizedModelDir;
+        }
+
+        public String getOptimizedModelFormat() {
+            return optimizedModelFormat;
+        }
+
+        public void setOptimizedModelFormat(String optimizedModelFormat) {
+            this.optimizedModelFormat = optimizedModelFormat;
+        }
+
+        public boolean isLoadFromMemory() {
+            return loadFromMemory;
+        }
+
+        public void setLoadFromMemory(boolean loadFromMemory) {
+            this.loadFromMemory = loadFromMemory;
+        }
+
+        public String getProfilingDir() {
+            return profilingDir;
+        }
+
+        public void setProfilingDir(String profilingDir) {
+            this.profilingDir = profilingDir;
+        }
+
+        public List<ProviderConfig> getProviders() {
+            return providers;
+        }
+
+        public void setProviders(List<ProviderConfig> providers) {
+            this.providers = providers;
+        }
+
+        public String getQuantizedModelPath() {
+            return quantizedModelPath;
+        }
+
+        public void setQuantizedModelPath(String quantizedModelPath) {
+            this.quantizedModelPath = quantizedModelPath;
+        }
+
+        public boolean isUseQuantized() {
+            return useQuantized;
+        }
+
+        public void setUseQuantized(boolean useQuantized) {
+            this.useQuantized = useQuantized;
+        }
+
+        public int[][] getShapeBuckets() {
+            return shapeBuckets;
+        }
+
+        public void setShapeBuckets(int[][] shapeBuckets) {
+            this.shapeBuckets = shapeBuckets;
+        }
+
+        public int getTileSize() {
+            return tileSize;
+        }
+
+        public void setTileSize(int tileSize) {
+            this.tileSize = tileSize;
+        }
+
+        public int getTileOverlap() {
+            return tileOverlap;
+        }
+
+        public void setTileOverlap(int tileOverlap) {
+            this.tileOverlap = tileOverlap;
+        }
+
+        public int getDetBatchNum() {
+            return detBatchNum;
+        }
+
+        public void setDetBatchNum(int detBatchNum) {
+            this.detBatchNum = detBatchNum;
+        }
     }
 
     // 分类模块配置类
@@ -307,12 +444,20 @@ public class OcrConfig {
         public boolean useCuda = false; // 是否使用 CUDA
         public int deviceId = 0; // 显卡编号
         public boolean useDml = false; // 是否使用 DML
-        public String modelPath = "ch_ppocr_mobile_v2.0_cls_infer.onnx"; // 模型路径
+        public String modelPath = "ch_ppocr_mobile_v2.0_cls_infer.onnx"; // 模型路径，支持 .onnx 与 .ort 格式
         public int[] clsImageShape = {3, 48, 192}; // 分类输入图像形状
         public int clsBatchNum = 1; // 分类批量处理数
         public float clsThresh = 0.9f; // 分类阈值
         public String[] labelList = {"0", "180"}; // 分类标签列表
         public boolean useArena = true; // arena内存池的扩展策略（速度有提升，但内存会剧增，且持续占用，不释放）
+        public int sessionPoolSize = 1; // 会话池大小，即可并发推理的请求数
+        public String optimizedModelDir; // 图优化后模型的缓存目录，设置后冷启动可跳过图优化
+        public String optimizedModelFormat = "onnx"; // 优化模型的缓存格式，onnx 或 ort（ort 加载更快、占用内存更少）
+        public boolean loadFromMemory = false; // assets 中的模型直接读入内存创建会话，省去复制到 cache 目录
+        public String profilingDir; // 算子级 profiling 文件输出目录，为 null 时不启用
+        public List<ProviderConfig> providers; // 执行设备优先级列表，如 xnnpack、cpu，为 null 时按 useCuda/useDml 选择
+        public String quantizedModelPath; // INT8 量化模型路径，支持 .onnx 与 .ort 格式
+        public boolean useQuantized = false; // 是否使用量化模型，为 true 时需设置 quantizedModelPath
 
         public int getIntraOpNumThreads() {
             return intraOpNumThreads;
@@ -401,6 +546,70 @@ public class OcrConfig {
         public void setUseArena(boolean useArena) {
             this.useArena = useArena;
         }
+
+        public int getSessionPoolSize() {
+            return sessionPoolSize;
+        }
+
+        public void setSessionPoolSize(int sessionPoolSize) {
+            this.sessionPoolSize = sessionPoolSize;
+        }
+
+        public String getOptimizedModelDir() {
+            return optimizedModelDir;
+        }
+
+        public void setOptimizedModelDir(String optimizedModelDir) {
+            this.optimizedModelDir = optimizedModelDir;
+        }
+
+        public String getOptimizedModelFormat() {
+            return optimizedModelFormat;
+        }
+
+        public void setOptimizedModelFormat(String optimizedModelFormat) {
+            this.optimizedModelFormat = optimizedModelFormat;
+        }
+
+        public boolean isLoadFromMemory() {
+            return loadFromMemory;
+        }
+
+        public void setLoadFromMemory(boolean loadFromMemory) {
+            this.loadFromMemory = loadFromMemory;
+        }
+
+        public String getProfilingDir() {
+            return profilingDir;
+        }
+
+        public void setProfilingDir(String profilingDir) {
+            this.profilingDir = profilingDir;
+        }
+
+        public List<ProviderConfig> getProviders() {
+            return providers;
+        }
+
+        public void setProviders(List<ProviderConfig> providers) {
+            this.providers = providers;
+        }
+
+        public String getQuantizedModelPath() {
+            return quantizedModelPath;
+        }
+
+        public void setQuantizedModelPath(String quantizedModelPath) {
+            this.quantizedModelPath = quantizedModelPath;
+        }
+
+        public boolean isUseQuantized() {
+            return useQuantized;
+        }
+
+        public void setUseQuantized(boolean useQuantized) {
+            this.useQuantized = useQuantized;
+        }
     }
 
     // 识别模块配置类
@@ -410,10 +619,18 @@ public class OcrConfig {
         public boolean useCuda = false; // 是否使用 CUDA
         public int deviceId = 0; // 显卡编号
         public boolean useDml = false; // 是否使用 DML
-        public String modelPath = "ch_PP-OCRv4_rec_infer.onnx"; // 模型路径
+        public String modelPath = "ch_PP-OCRv4_rec_infer.onnx"; // 模型路径，支持 .onnx 与 .ort 格式
         public int[] recImgShape = {3, 48, 320}; // 识别输入图像形状
         public int recBatchNum = 1; // 识别批量处理数
         public boolean useArena = true; // arena内存池的扩展策略（速度有提升，但内存会剧增，且持续占用，不释放）
+        public int sessionPoolSize = 1; // 会话池大小，即可并发推理的请求数
+        public String optimizedModelDir; // 图优化后模型的缓存目录，设置后冷启动可跳过图优化
+        public String optimizedModelFormat = "onnx"; // 优化模型的缓存格式，onnx 或 ort（ort 加载更快、占用内存更少）
+        public boolean loadFromMemory = false; // assets 中的模型直接读入内存创建会话，省去复制到 cache 目录
+        public String profilingDir; // 算子级 profiling 文件输出目录，为 null 时不启用
+        public List<ProviderConfig> providers; // 执行设备优先级列表，如 xnnpack、cpu，为 null 时按 useCuda/useDml 选择
+        public String quantizedModelPath; // INT8 量化模型路径，支持 .onnx 与 .ort 格式
+        public boolean useQuantized = false; // 是否使用量化模型，为 true 时需设置 quantizedModelPath
         public String recKeysPath; // 字典路径，如果不设置，默认从模型获取
 
         public int getIntraOpNumThreads() {
@@ -488,6 +705,70 @@ public class OcrConfig {
             this.useArena = useArena;
         }
 
+        public int getSessionPoolSize() {
+            return sessionPoolSize;
+        }
+
+        public void setSessionPoolSize(int sessionPoolSize) {
+            this.sessionPoolSize = sessionPoolSize;
+        }
+
+        public String getOptimizedModelDir() {
+            return optimizedModelDir;
+        }
+
+        public void setOptimizedModelDir(String optimizedModelDir) {
+            this.optimizedModelDir = optimizedModelDir;
+        }
+
+        public String getOptimizedModelFormat() {
+            return optimizedModelFormat;
+        }
+
+        public void setOptimizedModelFormat(String optimizedModelFormat) {
+            this.optimizedModelFormat = optimizedModelFormat;
+        }
+
+        public boolean isLoadFromMemory() {
+            return loadFromMemory;
+        }
+
+        public void setLoadFromMemory(boolean loadFromMemory) {
+            this.loadFromMemory = loadFromMemory;
+        }
+
+        public String getProfilingDir() {
+            return profilingDir;
+        }
+
+        public void setProfilingDir(String profilingDir) {
+            this.profilingDir = profilingDir;
+        }
+
+        public List<ProviderConfig> getProviders() {
+            return providers;
+        }
+
+        public void setProviders(List<ProviderConfig> providers) {
+            this.providers = providers;
+        }
+
+        public String getQuantizedModelPath() {
+            return quantizedModelPath;
+        }
+
+        public void setQuantizedModelPath(String quantizedModelPath) {
+            this.quantizedModelPath = quantizedModelPath;
+        }
+
+        public boolean isUseQuantized() {
+            return useQuantized;
+        }
+
+        public void setUseQuantized(boolean useQuantized) {
+            this.useQuantized = useQuantized;
+        }
+
         public String getRecKeysPath() {
             return recKeysPath;
         }
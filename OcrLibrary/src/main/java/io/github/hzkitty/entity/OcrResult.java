@@ -6,12 +6,23 @@ import java.util.List;
  * OCR 识别结果
  */
 public class OcrResult {
+
+    /**
+     * 识别状态
+     */
+    public enum Status {
+        COMPLETED, // 正常完成
+        CANCELLED, // 被取消，结果只包含已完成的部分
+        TIMEOUT    // 超时，结果只包含已完成的部分
+    }
+
     private String strRes;
     private List<RecResult> recRes;
     private double elapseTime;  // 总耗时
     private double detTime;  // 检测耗时
     private double clsTime;  // 分类耗时
     private double recTime;  // 识别耗时
+    private Status status = Status.COMPLETED; // 识别状态
 
     public OcrResult(String strRes, List<RecResult> recRes, double elapseTime, double detTime, double clsTime, double recTime) {
         this.strRes = strRes;
@@ -70,6 +81,21 @@ public class OcrResult {
         this.recTime = recTime;
     }
 
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * 是否为取消或超时后的部分结果
+     */
+    public boolean isPartial() {
+        return status != Status.COMPLETED;
+    }
+
     @Override
     public String toString() {
         return "OcrResult{" +
@@ -79,6 +105,7 @@ public class OcrResult {
                 ", detTime=" + detTime +
                 ", clsTime=" + clsTime +
                 ", recTime=" + recTime +
+                ", status=" + status +
                 '}';
     }
 }
\ No newline at end of file
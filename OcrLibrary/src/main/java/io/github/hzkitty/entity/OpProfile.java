@@ -0,0 +1,57 @@
+package io.github.hzkitty.entity;
+
+/**
+ * 单个算子节点的耗时统计（来自 ONNX Runtime profiling）
+ */
+public class OpProfile {
+    private final String nodeName; // 节点名称
+    private final String opType; // 算子类型，如 Conv、LSTM
+    private int count; // 执行次数
+    private long totalMicros; // 累计耗时（微秒）
+
+    public OpProfile(String nodeName, String opType) {
+        this.nodeName = nodeName;
+        this.opType = opType;
+    }
+
+    /**
+     * 累加一次执行耗时
+     */
+    public void add(long micros) {
+        this.count++;
+        this.totalMicros += micros;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public String getOpType() {
+        return opType;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    /**
+     * 平均每次耗时（微秒）
+     */
+    public double getAvgMicros() {
+        return count == 0 ? 0.0 : (double) totalMicros / count;
+    }
+
+    @Override
+    public String toString() {
+        return "OpProfile{" +
+                "nodeName='" + nodeName + '\'' +
+                ", opType='" + opType + '\'' +
+                ", count=" + count +
+                ", totalMicros=" + totalMicros +
+                '}';
+    }
+}
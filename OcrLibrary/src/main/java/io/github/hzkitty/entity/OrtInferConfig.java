@@ -1,5 +1,8 @@
 package io.github.hzkitty.entity;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class OrtInferConfig {
     public int intraOpNumThreads; // 单线程操作线程数
     public int interOpNumThreads; // 多线程操作线程数
@@ -8,6 +11,34 @@ public class OrtInferConfig {
     public boolean useDml; // 是否使用 DML
     public String modelPath; // 模型路径
     public boolean useArena;
+    public int sessionPoolSize = 1; // 会话池大小，即同一模型可并发推理的请求数
+    public String optimizedModelDir; // 图优化后模型的缓存目录，为 null 时不缓存
+    public String optimizedModelFormat = "onnx"; // 优化模型的缓存格式，onnx 或 ort
+    public boolean loadFromMemory = false; // assets 中的模型直接读入内存创建会话，不复制到 cache 目录
+    public String profilingDir; // profiling 文件输出目录，为 null 时不启用 profiling
+    public List<ProviderConfig> providers; // 执行设备优先级列表，为 null 时按 useCuda/useDml 选择
+
+    public OrtInferConfig() {
+    }
+
+    /**
+     * 复制一份配置，providers 列表为浅拷贝
+     */
+    public OrtInferConfig(OrtInferConfig other) {
+        this.intraOpNumThreads = other.intraOpNumThreads;
+        this.interOpNumThreads = other.interOpNumThreads;
+        this.useCuda = other.useCuda;
+        this.deviceId = other.deviceId;
+        this.useDml = other.useDml;
+        this.modelPath = other.modelPath;
+        this.useArena = other.useArena;
+        this.sessionPoolSize = other.sessionPoolSize;
+        this.optimizedModelDir = other.optimizedModelDir;
+        this.optimizedModelFormat = other.optimizedModelFormat;
+        this.loadFromMemory = other.loadFromMemory;
+        this.profilingDir = other.profilingDir;
+        this.providers = other.providers == null ? null : new ArrayList<>(other.providers);
+    }
 
     public int getIntraOpNumThreads() {
         return intraOpNumThreads;
@@ -64,4 +95,88 @@ public class OrtInferConfig {
     public void setUseArena(boolean useArena) {
         this.useArena = useArena;
     }
+
+    public int getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    public void setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+    }
+
+    public String getOptimizedModelDir() {
+        return optimizedModelDir;
+    }
+
+    public void setOptimizedModelDir(String optimizedModelDir) {
+        this.optimizedModelDir = optimizedModelDir;
+    }
+
+    public String getOptimizedModelFormat() {
+        return optimizedModelFormat;
+    }
+
+    public void setOptimizedModelFormat(String optimizedModelFormat) {
+        this.optimizedModelFormat = optimizedModelFormat;
+    }
+
+    public boolean isLoadFromMemory() {
+        return loadFromMemory;
+    }
+
+    public void setLoadFromMemory(boolean loadFromMemory) {
+        this.loadFromMemory = loadFromMemory;
+    }
+
+    public String getProfilingDir() {
+        return profilingDir;
+    }
+
+    public void setProfilingDir(String profilingDir) {
+        this.profilingDir = profilingDir;
+    }
+
+    public List<ProviderConfig> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<ProviderConfig> providers) {
+        this.providers = providers;
+    }
+
+    /**
+     * 选择模块实际加载的模型
+     *
+     * @param modelPath          FP32 模型路径
+     * @param quantizedModelPath 量化模型路径
+     * @param useQuantized       是否使用量化模型
+     */
+    public static String selectModelPath(String modelPath, String quantizedModelPath, boolean useQuantized) {
+        if (!useQuantized) {
+            return modelPath;
+        }
+        if (quantizedModelPath == null || quantizedModelPath.isEmpty()) {
+            throw new IllegalArgumentException("useQuantized 为 true 时需设置 quantizedModelPath");
+        }
+        return quantizedModelPath;
+    }
+
+    /**
+     * 会话共享使用的键：模型路径、会话选项与线程设置相同的配置可以共享同一份模型
+     */
+    public String getSessionKey() {
+        return modelPath
+                + "|intra=" + intraOpNumThreads
+                + "|inter=" + interOpNumThreads
+                + "|cuda=" + useCuda
+                + "|dml=" + useDml
+                + "|device=" + deviceId
+                + "|arena=" + useArena
+                + "|pool=" + sessionPoolSize
+                + "|optDir=" + optimizedModelDir
+                + "|optFormat=" + optimizedModelFormat
+                + "|memory=" + loadFromMemory
+                + "|profiling=" + profilingDir
+                + "|providers=" + providers;
+    }
 }
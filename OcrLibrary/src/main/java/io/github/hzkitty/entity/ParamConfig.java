@@ -1,5 +1,7 @@
 package io.github.hzkitty.entity;
 
+import io.github.hzkitty.utils.CancellationToken;
+
 public class ParamConfig {
     public Float boxThresh; // 边框阈值
     public Float unclipRatio; // 非极大值抑制后的扩展比例
@@ -8,6 +10,8 @@ public class ParamConfig {
     public Boolean useDet; // 是否使用检测模块
     public Boolean useCls; // 是否使用分类模块
     public Boolean useRec; // 是否使用识别模块
+    public Long timeoutMillis; // 本次识别的超时时间（毫秒），超时后返回部分结果
+    public CancellationToken cancellationToken; // 取消令牌，取消后返回部分结果
 
     public Float getBoxThresh() {
         return boxThresh;
@@ -64,4 +68,20 @@ public class ParamConfig {
     public void setUseRec(Boolean useRec) {
         this.useRec = useRec;
     }
+
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
 }
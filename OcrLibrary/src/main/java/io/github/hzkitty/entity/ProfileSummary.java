@@ -0,0 +1,49 @@
+package io.github.hzkitty.entity;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个模块的 profiling 汇总
+ */
+public class ProfileSummary {
+    private final String stage; // det / cls / rec
+    private final List<OpProfile> topOps; // 按累计耗时降序的算子
+    private final long totalMicros; // 所有算子的累计耗时（微秒）
+    private final List<String> profileFiles; // ONNX Runtime 生成的 profiling 文件，可在 chrome://tracing 中查看
+
+    public ProfileSummary(String stage, List<OpProfile> topOps, long totalMicros, List<String> profileFiles) {
+        this.stage = stage;
+        this.topOps = Collections.unmodifiableList(topOps);
+        this.totalMicros = totalMicros;
+        this.profileFiles = Collections.unmodifiableList(profileFiles);
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public List<OpProfile> getTopOps() {
+        return topOps;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public List<String> getProfileFiles() {
+        return profileFiles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(stage).append(" total ").append(totalMicros).append("us");
+        for (OpProfile op : topOps) {
+            double percent = totalMicros == 0 ? 0.0 : op.getTotalMicros() * 100.0 / totalMicros;
+            sb.append(String.format("%n  %-40s %-16s %8d us %5.1f%% x%d",
+                    op.getNodeName(), op.getOpType(), op.getTotalMicros(), percent, op.getCount()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.hzkitty.entity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 执行设备（Execution Provider）配置
+ * <p>
+ * 多个 ProviderConfig 按列表顺序注册，排在前面的优先执行；当前环境不可用或参数有误的设备会被跳过（记录警告日志），
+ * CPU 始终作为最后的兜底。
+ */
+public class ProviderConfig {
+    public static final String CPU = "cpu";
+    public static final String CUDA = "cuda";
+    public static final String DML = "dml";
+    public static final String XNNPACK = "xnnpack";
+    public static final String NNAPI = "nnapi";
+
+    public String name; // 设备名：cpu / cuda / dml / xnnpack / nnapi
+    public int deviceId = 0; // 设备 ID，仅 cuda / dml 使用
+    public Map<String, String> options = new LinkedHashMap<>(); // 设备参数，原样传给 ONNX Runtime
+
+    public ProviderConfig() {
+    }
+
+    public ProviderConfig(String name) {
+        this.name = name;
+    }
+
+    public static ProviderConfig cpu() {
+        return new ProviderConfig(CPU);
+    }
+
+    /**
+     * XNNPACK，适用于 ARM / x86 CPU
+     *
+     * @param numThreads XNNPACK 线程数，小于 1 时由 ONNX Runtime 决定
+     */
+    public static ProviderConfig xnnpack(int numThreads) {
+        ProviderConfig config = new ProviderConfig(XNNPACK);
+        if (numThreads >= 1) {
+            config.options.put("intra_op_num_threads", String.valueOf(numThreads));
+        }
+        return config;
+    }
+
+    /**
+     * NNAPI，options 的 key 为 NNAPIFlags 名称（不区分大小写），如 USE_FP16、CPU_DISABLED，值为 "1" 或 "true" 时启用；
+     * 出现未知的 key 时不使用 NNAPI
+     */
+    public static ProviderConfig nnapi() {
+        return new ProviderConfig(NNAPI);
+    }
+
+    public static ProviderConfig cuda(int deviceId) {
+        ProviderConfig config = new ProviderConfig(CUDA);
+        config.deviceId = deviceId;
+        // kNextPowerOfTwo（默认值）以 2 的幂数扩展，而 kSameAsRequested 每次扩展的大小与分配请求的大小相同。
+        config.options.put("arena_extend_strategy", "kNextPowerOfTwo");
+        config.options.put("cudnn_conv_algo_search", "EXHAUSTIVE");
+        config.options.put("do_copy_in_default_stream", "1");
+        return config;
+    }
+
+    public static ProviderConfig dml(int deviceId) {
+        ProviderConfig config = new ProviderConfig(DML);
+        config.deviceId = deviceId;
+        return config;
+    }
+
+    /**
+     * 添加设备参数
+     */
+    public ProviderConfig option(String key, String value) {
+        this.options.put(key, value);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(int deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    public void setOptions(Map<String, String> options) {
+        this.options = options;
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + deviceId + options;
+    }
+}
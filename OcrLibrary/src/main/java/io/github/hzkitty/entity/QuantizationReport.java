@@ -0,0 +1,103 @@
+package io.github.hzkitty.entity;
+
+import java.util.Locale;
+
+/**
+ * FP32 与量化模型在同一批标注图片上的对比结果
+ */
+public class QuantizationReport {
+    private final VariantStats baseline; // FP32 模型
+    private final VariantStats quantized; // 量化模型
+
+    public QuantizationReport(VariantStats baseline, VariantStats quantized) {
+        this.baseline = baseline;
+        this.quantized = quantized;
+    }
+
+    public VariantStats getBaseline() {
+        return baseline;
+    }
+
+    public VariantStats getQuantized() {
+        return quantized;
+    }
+
+    /**
+     * 加速比：FP32 平均耗时 / 量化模型平均耗时
+     */
+    public double getSpeedup() {
+        return quantized.getAvgElapse() > 0 ? baseline.getAvgElapse() / quantized.getAvgElapse() : 0.0;
+    }
+
+    /**
+     * 字符准确率变化：量化模型 - FP32，负数表示下降
+     */
+    public double getAccuracyDelta() {
+        return quantized.getCharAccuracy() - baseline.getCharAccuracy();
+    }
+
+    /**
+     * 常驻内存变化（字节）：量化模型 - FP32
+     */
+    public long getMemoryDelta() {
+        return quantized.getMemoryBytes() - baseline.getMemoryBytes();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "QuantizationReport{speedup=%.2fx, accuracyDelta=%+.4f, memoryDelta=%+d KB,%n  baseline=%s,%n  quantized=%s}",
+                getSpeedup(), getAccuracyDelta(), getMemoryDelta() / 1024, baseline, quantized);
+    }
+
+    /**
+     * 单个模型组合的统计
+     */
+    public static class VariantStats {
+        private final int samples; // 图片数量
+        private final double avgElapse; // 单张图片平均耗时（秒），不含首轮
+        private final long memoryBytes; // 加载模型并完成识别后进程常驻内存的增量（字节）
+        private final int editDistance; // 所有图片的编辑距离之和
+        private final int labelChars; // 所有标注的字符数之和
+
+        public VariantStats(int samples, double avgElapse, long memoryBytes, int editDistance, int labelChars) {
+            this.samples = samples;
+            this.avgElapse = avgElapse;
+            this.memoryBytes = memoryBytes;
+            this.editDistance = editDistance;
+            this.labelChars = labelChars;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public double getAvgElapse() {
+            return avgElapse;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        public int getEditDistance() {
+            return editDistance;
+        }
+
+        public int getLabelChars() {
+            return labelChars;
+        }
+
+        /**
+         * 字符准确率：1 - 编辑距离 / 标注字符数，最低为 0
+         */
+        public double getCharAccuracy() {
+            return labelChars > 0 ? Math.max(0.0, 1.0 - (double) editDistance / labelChars) : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "VariantStats{samples=%d, avgElapse=%.4fs, memory=%d KB, charAccuracy=%.4f}",
+                    samples, avgElapse, memoryBytes / 1024, getCharAccuracy());
+        }
+    }
+}
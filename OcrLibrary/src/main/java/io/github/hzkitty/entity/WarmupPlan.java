@@ -0,0 +1,73 @@
+package io.github.hzkitty.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预热计划：指定检测/分类/识别各自需要预热的输入形状
+ * <p>
+ * ONNX Runtime 在每种新输入形状第一次运行时分配内存并选择算子实现，预热后首批真实请求不再出现耗时尖峰。
+ * 分类、识别的批大小及识别宽度未指定时，使用各模块配置中的默认值。
+ */
+public class WarmupPlan {
+    private List<int[]> detImageSizes = new ArrayList<>(); // 检测的图像尺寸 {高, 宽}，按检测预处理规则换算成模型输入形状
+    private List<Integer> clsBatchSizes = new ArrayList<>(); // 分类批大小
+    private List<Integer> recBatchSizes = new ArrayList<>(); // 识别批大小
+    private List<Integer> recImageWidths = new ArrayList<>(); // 识别输入宽度
+    private int iterations = 1; // 每个形状在每个会话上运行的次数
+
+    /**
+     * 常见的手机拍照/截图尺寸，分类和识别使用配置中的默认形状
+     */
+    public static WarmupPlan defaults() {
+        WarmupPlan plan = new WarmupPlan();
+        plan.detImageSizes.addAll(Arrays.asList(new int[]{1280, 720}, new int[]{720, 1280}, new int[]{1080, 1080}));
+        return plan;
+    }
+
+    public WarmupPlan addDetImageSize(int height, int width) {
+        this.detImageSizes.add(new int[]{height, width});
+        return this;
+    }
+
+    public List<int[]> getDetImageSizes() {
+        return detImageSizes;
+    }
+
+    public void setDetImageSizes(List<int[]> detImageSizes) {
+        this.detImageSizes = detImageSizes;
+    }
+
+    public List<Integer> getClsBatchSizes() {
+        return clsBatchSizes;
+    }
+
+    public void setClsBatchSizes(List<Integer> clsBatchSizes) {
+        this.clsBatchSizes = clsBatchSizes;
+    }
+
+    public List<Integer> getRecBatchSizes() {
+        return recBatchSizes;
+    }
+
+    public void setRecBatchSizes(List<Integer> recBatchSizes) {
+        this.recBatchSizes = recBatchSizes;
+    }
+
+    public List<Integer> getRecImageWidths() {
+        return recImageWidths;
+    }
+
+    public void setRecImageWidths(List<Integer> recImageWidths) {
+        this.recImageWidths = recImageWidths;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+}
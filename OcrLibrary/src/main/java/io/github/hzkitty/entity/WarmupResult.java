@@ -0,0 +1,55 @@
+package io.github.hzkitty.entity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个输入形状的预热结果
+ */
+public class WarmupResult {
+    private final String stage; // det / cls / rec
+    private final long[] shape; // 模型输入形状
+    private final List<Double> elapse; // 每次运行耗时（秒），按会话、迭代顺序排列
+
+    public WarmupResult(String stage, long[] shape, List<Double> elapse) {
+        this.stage = stage;
+        this.shape = shape;
+        this.elapse = Collections.unmodifiableList(elapse);
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long[] getShape() {
+        return shape;
+    }
+
+    public List<Double> getElapse() {
+        return elapse;
+    }
+
+    /**
+     * 首次运行耗时（秒），通常包含内存分配与算子选择
+     */
+    public double getFirstElapse() {
+        return elapse.isEmpty() ? 0.0 : elapse.get(0);
+    }
+
+    /**
+     * 最大耗时（秒）
+     */
+    public double getMaxElapse() {
+        return elapse.isEmpty() ? 0.0 : Collections.max(elapse);
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupResult{" +
+                "stage='" + stage + '\'' +
+                ", shape=" + Arrays.toString(shape) +
+                ", elapse=" + elapse +
+                '}';
+    }
+}
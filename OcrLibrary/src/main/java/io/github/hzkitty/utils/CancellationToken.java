@@ -0,0 +1,150 @@
+package io.github.hzkitty.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 取消令牌，用于中止正在进行的识别
+ * <p>
+ * 调用 {@link #cancel()} 后，正在执行的 ONNX Runtime 推理通过 RunOptions.setTerminate 尽快退出，
+ * 各阶段之间以及识别批次之间也会检查令牌。{@link #withTimeout(long)} 派生带截止时间的子令牌，
+ * 父令牌取消或超时都会取消子令牌，用完需调用 {@link #close()} 解除关联。
+ */
+public class CancellationToken implements AutoCloseable {
+
+    /**
+     * 取消原因
+     */
+    public enum Reason {
+        CANCELLED, // 调用方主动取消
+        TIMEOUT    // 超过截止时间
+    }
+
+    // 所有超时令牌共用的计时线程
+    private static ScheduledThreadPoolExecutor timer;
+
+    private final AtomicReference<Reason> reason = new AtomicReference<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private CancellationToken parent;
+    private Runnable parentListener;
+    private ScheduledFuture<?> timeoutFuture;
+
+    /**
+     * 取消
+     */
+    public void cancel() {
+        cancel(Reason.CANCELLED);
+    }
+
+    /**
+     * 以指定原因取消，已取消时忽略
+     */
+    public void cancel(Reason cancelReason) {
+        if (reason.compareAndSet(null, cancelReason)) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return reason.get() != null;
+    }
+
+    /**
+     * 取消原因，未取消时为 null
+     */
+    public Reason getReason() {
+        return reason.get();
+    }
+
+    /**
+     * 已取消时抛出 {@link CancelledException}
+     */
+    public void throwIfCancelled() {
+        Reason current = reason.get();
+        if (current != null) {
+            throw new CancelledException(current);
+        }
+    }
+
+    /**
+     * 注册取消回调，已取消时立即执行
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+        if (isCancelled() && listeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 派生一个子令牌，本令牌取消或超过 timeoutMillis 后子令牌被取消
+     *
+     * @param timeoutMillis 超时时间（毫秒），小于等于 0 表示不设超时
+     */
+    public CancellationToken withTimeout(long timeoutMillis) {
+        CancellationToken child = new CancellationToken();
+        child.parent = this;
+        child.parentListener = () -> child.cancel(getReason());
+        addListener(child.parentListener);
+        if (timeoutMillis > 0) {
+            child.timeoutFuture = timer().schedule(() -> child.cancel(Reason.TIMEOUT), timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return child;
+    }
+
+    /**
+     * 解除与父令牌的关联并取消计时，不会取消本令牌
+     */
+    @Override
+    public void close() {
+        if (parent != null) {
+            parent.removeListener(parentListener);
+            parent = null;
+        }
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel(false);
+            timeoutFuture = null;
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor timer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "RapidOCR-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+        }
+        return timer;
+    }
+
+    /**
+     * 识别被取消或超时
+     */
+    public static class CancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Reason reason;
+
+        public CancelledException(Reason reason) {
+            super(reason == Reason.TIMEOUT ? "识别超时" : "识别已取消");
+            this.reason = reason;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+    }
+}
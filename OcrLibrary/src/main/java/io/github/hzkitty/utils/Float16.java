@@ -0,0 +1,100 @@
+package io.github.hzkitty.utils;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * IEEE 754 半精度（FP16）与单精度之间的转换，按位实现，舍入方式为就近舍入到偶数
+ * <p>
+ * Android 在 API 26 以下没有 android.util.Half，Java 在 20 以下没有 Float.floatToFloat16，这里自行实现。
+ */
+public final class Float16 {
+
+    private Float16() {
+    }
+
+    /**
+     * float 转为 FP16 的位表示
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xFF;
+        int mant = bits & 0x7FFFFF;
+
+        if (exp == 0xFF) {
+            // Inf / NaN，NaN 保留高位尾数并确保不变成 Inf
+            return (short) (sign | 0x7C00 | (mant != 0 ? 0x200 | (mant >>> 13) : 0));
+        }
+        int halfExp = exp - 127 + 15;
+        if (halfExp >= 0x1F) {
+            // 超出 FP16 范围，溢出为 Inf
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExp <= 0) {
+            // 非规格化数，小于最小非规格化数一半的值舍入为 0
+            if (halfExp < -10) {
+                return (short) sign;
+            }
+            mant |= 0x800000;
+            int shift = 14 - halfExp;
+            int half = mant >>> shift;
+            int rem = mant & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rem > halfway || (rem == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (halfExp << 10) | (mant >>> 13);
+        int rem = mant & 0x1FFF;
+        // 进位可能进入指数位，恰好得到正确的结果（包括溢出为 Inf）
+        if (rem > 0x1000 || (rem == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * FP16 的位表示转为 float，结果精确
+     */
+    public static float toFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1F;
+        int mant = bits & 0x3FF;
+        if (exp == 0) {
+            // 0 或非规格化数：mant * 2^-24
+            float value = mant * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mant << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+    }
+
+    /**
+     * 将 src 中 position 到 limit 的 FP16 数据依次转换写入 dst，两者的 position 均不变
+     */
+    public static void toFloat(ShortBuffer src, FloatBuffer dst) {
+        int size = src.remaining();
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        for (int i = 0; i < size; i++) {
+            dst.put(dstPos + i, toFloat(src.get(srcPos + i)));
+        }
+    }
+
+    /**
+     * 将 src 中 position 到 limit 的 float 数据依次转换写入 dst，两者的 position 均不变
+     */
+    public static void toHalf(FloatBuffer src, ShortBuffer dst) {
+        int size = src.remaining();
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        for (int i = 0; i < size; i++) {
+            dst.put(dstPos + i, toHalf(src.get(srcPos + i)));
+        }
+    }
+}
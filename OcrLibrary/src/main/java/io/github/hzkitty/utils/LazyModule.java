@@ -0,0 +1,73 @@
+package io.github.hzkitty.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * 延迟创建的模块持有者，首次 {@link #get()} 时创建，多线程下只创建一次
+ * <p>
+ * 创建失败时不缓存异常，下次调用会重新尝试；{@link #close()} 后不可再使用。
+ *
+ * @param <T> 模块类型
+ */
+public class LazyModule<T extends AutoCloseable> implements AutoCloseable {
+
+    private final String name;
+    private final Supplier<T> factory;
+    private volatile T module;
+    private boolean closed = false;
+
+    public LazyModule(String name, Supplier<T> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * 获取模块，未创建时在当前线程创建
+     */
+    public T get() {
+        T current = module;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException(name + " 已关闭");
+            }
+            if (module == null) {
+                module = factory.get();
+            }
+            return module;
+        }
+    }
+
+    /**
+     * 模块是否已创建
+     */
+    public boolean isInitialized() {
+        return module != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 关闭已创建的模块，未创建时只标记为已关闭
+     */
+    @Override
+    public void close() {
+        T current;
+        synchronized (this) {
+            closed = true;
+            current = module;
+            module = null;
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
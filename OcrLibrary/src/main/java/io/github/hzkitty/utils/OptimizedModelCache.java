@@ -0,0 +1,177 @@
+package io.github.hzkitty.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * ONNX Runtime 图优化结果的磁盘缓存
+ * <p>
+ * 首次加载时通过 SessionOptions.setOptimizedModelFilePath 把优化后的模型写入缓存目录，
+ * 之后直接加载优化后的模型并跳过图优化。缓存文件名包含源模型的 SHA-256、ORT 版本与执行设备，
+ * 任一变化都会生成新的缓存文件，旧文件随之清理。
+ */
+public final class OptimizedModelCache {
+
+    private static final Logger logger = Logger.getLogger("OptimizedModelCache");
+
+    private static final String SUFFIX = ".opt.";
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000L;
+
+    private OptimizedModelCache() {
+    }
+
+    /**
+     * 计算缓存文件路径：<模型名>.<模型哈希>.<ORT版本>.<设备>.opt.<onnx|ort>
+     *
+     * @param cacheDir   缓存目录
+     * @param modelName  源模型文件名
+     * @param modelHash  源模型哈希
+     * @param ortVersion ONNX Runtime 版本
+     * @param deviceTag  执行设备标识，如 cpu / cuda0
+     * @param format     保存格式，ONNX 或 ORT
+     * @return 缓存文件
+     */
+    public static File cacheFile(File cacheDir, String modelName, String modelHash, String ortVersion, String deviceTag,
+                                 String format) {
+        String fileName = baseName(modelName) + "." + modelHash + "." + ortVersion + "." + deviceTag
+                + SUFFIX + format.toLowerCase(Locale.ROOT);
+        return new File(cacheDir, fileName);
+    }
+
+    /**
+     * 为本次写入生成唯一的临时文件，写入完成后再通过 {@link #commit(File, File, String)} 原子替换
+     */
+    public static File tempFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(),
+                cacheFile.getName() + "." + Thread.currentThread().getId() + "." + System.nanoTime() + ".tmp");
+    }
+
+    /**
+     * 将临时文件原子地移动为正式缓存文件，并清理同一模型的旧缓存
+     */
+    public static void commit(File tempFile, File cacheFile, String modelName) {
+        try {
+            if (!tempFile.exists() || tempFile.length() == 0) {
+                logger.warning("Optimized model was not written: " + tempFile);
+                return;
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            removeStale(cacheFile, baseName(modelName) + ".");
+            logger.info("Optimized model cached: " + cacheFile);
+        } catch (IOException e) {
+            logger.warning("Failed to cache optimized model: " + e.getMessage());
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 删除损坏或不可用的缓存文件
+     */
+    public static void invalidate(File cacheFile) {
+        if (cacheFile.exists() && !cacheFile.delete()) {
+            logger.warning("Failed to delete optimized model cache: " + cacheFile);
+        }
+    }
+
+    /**
+     * 计算模型内容的 SHA-256，取前 16 位十六进制
+     */
+    public static String sha256(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return sha256(in);
+        }
+    }
+
+    /**
+     * 计算模型内容的 SHA-256，取前 16 位十六进制
+     */
+    public static String sha256(InputStream in) throws IOException {
+        return copyWithSha256(in, null);
+    }
+
+    /**
+     * 把流写入 out 的同时计算内容的 SHA-256，取前 16 位十六进制，只读取一遍
+     *
+     * @param out 写入目标，为 null 时只计算哈希
+     */
+    public static String copyWithSha256(InputStream in, OutputStream out) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1 << 16];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, bytesRead);
+            if (out != null) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 计算模型内容的 SHA-256，取前 16 位十六进制
+     */
+    public static String sha256(byte[] data) {
+        MessageDigest digest = newDigest();
+        digest.update(data);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 清理同一模型名下其他哈希/版本的缓存文件，以及超过一小时的残留临时文件
+     */
+    private static void removeStale(File cacheFile, String prefix) {
+        File[] files = cacheFile.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        // 只清理同一执行设备、同一格式的旧缓存，例如 ".cpu.opt.onnx"
+        String cacheName = cacheFile.getName();
+        String deviceSuffix = cacheName.substring(cacheName.lastIndexOf('.', cacheName.lastIndexOf(SUFFIX) - 1));
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        for (File file : files) {
+            String name = file.getName();
+            if (file.equals(cacheFile) || !name.startsWith(prefix)) {
+                continue;
+            }
+            // 文件名去掉前缀后应为 <哈希>.<版本>...，哈希固定 16 位，避免误删名字相近的其他模型
+            String rest = name.substring(prefix.length());
+            if (rest.length() <= 16 || rest.charAt(16) != '.') {
+                continue;
+            }
+            if (name.endsWith(deviceSuffix) || (name.endsWith(".tmp") && file.lastModified() < staleBefore)) {
+                file.delete();
+            }
+        }
+    }
+
+    private static String baseName(String modelName) {
+        String name = new File(modelName).getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
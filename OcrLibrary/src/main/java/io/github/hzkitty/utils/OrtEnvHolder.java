@@ -0,0 +1,78 @@
+package io.github.hzkitty.utils;
+
+import java.util.logging.Logger;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtLoggingLevel;
+
+/**
+ * 进程内唯一的 OrtEnvironment
+ * <p>
+ * 可在创建任何会话之前通过 {@link #initGlobalThreadPool(int, int)} 启用全局线程池，
+ * 之后所有会话共享同一组 intra-op / inter-op 线程，线程总数不再随加载的模型数量增长。
+ * OrtEnvironment 一旦创建就无法再指定线程池，此时启用失败并继续使用会话各自的线程池。
+ */
+public final class OrtEnvHolder {
+
+    private static final Logger logger = Logger.getLogger("OrtEnvHolder");
+
+    private static final String ENV_NAME = "OrtInferSessionEnv";
+
+    private static OrtEnvironment env;
+    private static boolean globalThreadPool = false;
+
+    private OrtEnvHolder() {
+    }
+
+    /**
+     * 获取（必要时创建）OrtEnvironment
+     */
+    public static synchronized OrtEnvironment get() {
+        if (env == null) {
+            env = OrtEnvironment.getEnvironment(ENV_NAME);
+        }
+        return env;
+    }
+
+    /**
+     * 以全局线程池创建 OrtEnvironment，必须在创建任何会话之前调用
+     *
+     * @param intraOpNumThreads 全局 intra-op 线程数，小于 1 时由 ONNX Runtime 决定
+     * @param interOpNumThreads 全局 inter-op 线程数，小于 1 时由 ONNX Runtime 决定
+     * @return 全局线程池是否可用
+     */
+    public static synchronized boolean initGlobalThreadPool(int intraOpNumThreads, int interOpNumThreads) {
+        if (globalThreadPool) {
+            return true;
+        }
+        if (env != null) {
+            logger.warning("OrtEnvironment already created, global thread pool is not enabled.");
+            return false;
+        }
+        try (OrtEnvironment.ThreadingOptions threadingOptions = new OrtEnvironment.ThreadingOptions()) {
+            if (intraOpNumThreads >= 1) {
+                threadingOptions.setGlobalIntraOpNumThreads(intraOpNumThreads);
+            }
+            if (interOpNumThreads >= 1) {
+                threadingOptions.setGlobalInterOpNumThreads(interOpNumThreads);
+            }
+            env = OrtEnvironment.getEnvironment(OrtLoggingLevel.ORT_LOGGING_LEVEL_WARNING, ENV_NAME, threadingOptions);
+            globalThreadPool = true;
+            logger.info(String.format("Global thread pool enabled, intraOpNumThreads: %d, interOpNumThreads: %d.",
+                    intraOpNumThreads, interOpNumThreads));
+        } catch (OrtException | IllegalStateException e) {
+            // 进程中其他代码已创建过 OrtEnvironment
+            logger.warning("Failed to enable global thread pool: " + e.getMessage());
+            env = OrtEnvironment.getEnvironment(ENV_NAME);
+        }
+        return globalThreadPool;
+    }
+
+    /**
+     * 是否已启用全局线程池
+     */
+    public static synchronized boolean hasGlobalThreadPool() {
+        return globalThreadPool;
+    }
+}
@@ -1,25 +1,41 @@
 package io.github.hzkitty.utils;
 
 import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
 import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
@@ -27,81 +43,353 @@ import ai.onnxruntime.OrtLoggingLevel;
 import ai.onnxruntime.OrtProvider;
 import ai.onnxruntime.OrtSession;
 import ai.onnxruntime.OrtSession.Result;
+import ai.onnxruntime.OrtSession.RunOptions;
 import ai.onnxruntime.OrtSession.SessionOptions;
+import ai.onnxruntime.TensorInfo;
+import ai.onnxruntime.providers.NNAPIFlags;
 import ai.onnxruntime.providers.OrtCUDAProviderOptions;
+import io.github.hzkitty.entity.FloatTensor;
 import io.github.hzkitty.entity.OrtInferConfig;
+import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.ProviderConfig;
 
-public class OrtInferSession {
+public class OrtInferSession implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger("OrtInferSession");
 
+    // ONNX Runtime 会话配置项：模型加载/保存格式
+    private static final String LOAD_MODEL_FORMAT = "session.load_model_format";
+    private static final String SAVE_MODEL_FORMAT = "session.save_model_format";
+    private static final String FORMAT_ORT = "ORT";
+    private static final String FORMAT_ONNX = "ONNX";
+    // 已解压模型旁的记录文件后缀，内容为 <长度> <APK 更新时间> <SHA-256>
+    private static final String EXTRACT_RECORD_SUFFIX = ".extract";
+    // ONNX Runtime 会话配置项：intra-op 线程空闲时是否自旋等待
+    private static final String ALLOW_INTRA_OP_SPINNING = "session.intra_op.allow_spinning";
+    // 复制/读取模型时的缓冲区大小
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
     private final OrtEnvironment env;
     private final OrtSession session;
     private final String inputName;
+    private final String outputName;
+    // 模型输入/输出的数据类型，量化模型的输入输出可能不是 float32
+    private final OnnxJavaType inputType;
+    private final OnnxJavaType outputType;
+    // 按形状缓存的输入/输出张量池
+    private final TensorPool tensorPool;
 
-    private boolean useCuda = false;
-    private boolean useDirectML = false;
+    // 实际生效的执行设备
+    private List<String> activeProviders = Collections.emptyList();
 
     private final Context context;
 
+    // profiling 文件名序号，避免同一模型的多个会话在同一秒内生成同名文件
+    private static final AtomicInteger PROFILE_SEQ = new AtomicInteger();
+    private boolean profiling = false;
+
 
     public OrtInferSession(Context context, OrtInferConfig ortInferConfig) {
         logger.info("Initializing OrtInferSession...");
 
         String modelPath = ortInferConfig.getModelPath();
-        this.useCuda = ortInferConfig.useCuda;
-        this.useDirectML = ortInferConfig.useDml;
         this.context = context;
 
         // 1、创建 ONNX Runtime 环境
-        this.env = OrtEnvironment.getEnvironment("OrtInferSessionEnv");
+        this.env = OrtEnvHolder.get();
 
         try {
             // 2. 初始化 SessionOptions
             SessionOptions sessionOptions = initSessionOptions(ortInferConfig);
-            EnumSet<OrtProvider> availableProviders = env.getAvailableProviders();
-            if (this.useCuda && availableProviders.contains(OrtProvider.CUDA)) {
-                OrtCUDAProviderOptions providerOptions = new OrtCUDAProviderOptions(ortInferConfig.getDeviceId());
-                // kNextPowerOfTwo（默认值）以 2 的幂数扩展，而 kSameAsRequested 每次扩展的大小与分配请求的大小相同。
-                providerOptions.add("arena_extend_strategy", "kNextPowerOfTwo");
-                providerOptions.add("cudnn_conv_algo_search", "EXHAUSTIVE");
-                providerOptions.add("do_copy_in_default_stream", "1");
-                sessionOptions.addCUDA(providerOptions);
-                logger.info(String.format("Requested CUDA EP added to session options, deviceId: %s.", ortInferConfig.getDeviceId()));
-            }
-
-            if (this.useDirectML && availableProviders.contains(OrtProvider.DIRECT_ML)) {
-                sessionOptions.addDirectML(ortInferConfig.getDeviceId());
-                logger.info("Requested DirectML EP - might not be supported in certain Java packages.");
+            // 3. 按优先级注册执行设备，不可用的设备跳过，CPU 兜底
+            List<ProviderConfig> providers = ortInferConfig.getProviders();
+            if (providers == null || providers.isEmpty()) {
+                providers = legacyProviders(ortInferConfig);
             }
-
-            // 最后添加 CPU
-            if (availableProviders.contains(OrtProvider.CPU)) {
-                sessionOptions.addCPU(ortInferConfig.useArena);
-                logger.info("CPU EP added to session options.");
+            this.activeProviders = Collections.unmodifiableList(addProviders(sessionOptions, providers, ortInferConfig));
+            logger.info("Active execution providers: " + activeProviders);
+            // 执行设备标识，用于区分不同设备上的图优化缓存
+            ProviderConfig firstProvider = firstActive(providers);
+            String deviceTag = deviceTag(firstProvider);
+            String optimizedModelDir = ortInferConfig.getOptimizedModelDir();
+            if (optimizedModelDir != null && !isCacheable(firstProvider)) {
+                // XNNPACK/NNAPI 会改写图的布局或将子图编译为设备内核，优化后的图无法保存，不使用缓存
+                logger.info("Optimized model cache disabled for provider: " + firstProvider.getName());
+                optimizedModelDir = null;
             }
 
             // 4. 创建推理会话
             Path path = Paths.get(modelPath);
+            File modelFile = null;
+            byte[] modelBytes = null;
+            String modelHash = null;
             if (path.isAbsolute()) {
                 // 直接使用绝对路径加载模型
-                File modelFile = path.toFile();
+                modelFile = path.toFile();
                 if (!modelFile.exists()) {
                     throw new RuntimeException("模型文件未找到: " + modelPath);
                 }
-                this.session = env.createSession(modelFile.getAbsolutePath(), sessionOptions);
+            } else if (ortInferConfig.isLoadFromMemory()) {
+                // 从 assets 读入内存后直接创建会话，不再写入 cache 目录
+                modelBytes = readAsset(context, modelPath);
             } else {
-                // 从 assets 中加载模型，复制到 cache 目录
-                File modelFile = copyAssetToCache(context, modelPath);
-                this.session = env.createSession(modelFile.getAbsolutePath(), sessionOptions);
+                // 从 assets 中加载模型，复制到 cache 目录，解压时已得到内容哈希
+                Pair<File, String> extracted = copyAssetToCache(context, modelPath);
+                modelFile = extracted.getLeft();
+                modelHash = extracted.getRight();
             }
+            this.session = createSession(new File(modelPath).getName(), modelFile, modelBytes, modelHash, sessionOptions,
+                    optimizedModelDir, isOrtFormat(ortInferConfig.getOptimizedModelFormat()), deviceTag);
             inputName = this.getInputNames().get(0);
+            outputName = this.getOutputNames().get(0);
+            inputType = tensorType(session.getInputInfo().get(inputName));
+            outputType = tensorType(session.getOutputInfo().get(outputName));
+            if (!isSupportedInput(inputType)) {
+                throw new UnsupportedOperationException("不支持的模型输入类型: " + inputType);
+            }
+            if (inputType != OnnxJavaType.FLOAT || outputType != OnnxJavaType.FLOAT) {
+                logger.info(String.format("Model I/O types: input %s, output %s, converted from/to float.", inputType, outputType));
+            }
         } catch (OrtException | IOException e) {
             throw new RuntimeException(e);
         }
+        this.tensorPool = new TensorPool(env);
         logger.info("OrtInferSession initialization completed.");
     }
 
+    /**
+     * 创建推理会话，若配置了优化模型缓存目录，则优先加载已缓存的优化模型
+     * <p>
+     * .ort 格式的模型在转换时已完成图优化，直接加载，不再经过缓存。
+     *
+     * @param modelName         模型文件名，用于判断格式和命名缓存
+     * @param modelFile         源模型文件，与 modelBytes 二选一
+     * @param modelBytes        已读入内存的模型内容，与 modelFile 二选一
+     * @param modelHash         源模型的 SHA-256，为 null 时在需要缓存时计算
+     * @param sessionOptions    会话选项
+     * @param optimizedModelDir 优化模型缓存目录，为 null 时不使用缓存
+     * @param cacheAsOrt        是否以 ORT 格式保存优化后的模型
+     * @param deviceTag         执行设备标识
+     */
+    private OrtSession createSession(String modelName, File modelFile, byte[] modelBytes, String modelHash,
+                                     SessionOptions sessionOptions,
+                                     String optimizedModelDir, boolean cacheAsOrt, String deviceTag)
+            throws OrtException, IOException {
+        if (isOrtFormat(modelName)) {
+            sessionOptions.addConfigEntry(LOAD_MODEL_FORMAT, FORMAT_ORT);
+            logger.info("Loading ORT format model: " + modelName);
+            return openSession(modelFile, modelBytes, sessionOptions);
+        }
+        if (optimizedModelDir == null) {
+            return openSession(modelFile, modelBytes, sessionOptions);
+        }
+        File cacheDir = new File(optimizedModelDir);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            logger.warning("Optimized model cache dir unavailable: " + optimizedModelDir);
+            return openSession(modelFile, modelBytes, sessionOptions);
+        }
+
+        if (modelHash == null) {
+            modelHash = modelBytes != null ? OptimizedModelCache.sha256(modelBytes) : OptimizedModelCache.sha256(modelFile);
+        }
+        String format = cacheAsOrt ? FORMAT_ORT : FORMAT_ONNX;
+        File cacheFile = OptimizedModelCache.cacheFile(cacheDir, modelName, modelHash, env.getVersion(), deviceTag, format);
+        if (cacheFile.exists()) {
+            // 已是优化后的模型，跳过图优化；缓存格式由 ONNX Runtime 按扩展名识别
+            sessionOptions.setOptimizationLevel(SessionOptions.OptLevel.NO_OPT);
+            try {
+                OrtSession cached = env.createSession(cacheFile.getAbsolutePath(), sessionOptions);
+                logger.info("Loaded optimized model from cache: " + cacheFile);
+                return cached;
+            } catch (OrtException e) {
+                logger.warning("Optimized model cache is unusable, rebuilding: " + e.getMessage());
+                OptimizedModelCache.invalidate(cacheFile);
+                sessionOptions.setOptimizationLevel(SessionOptions.OptLevel.ALL_OPT);
+            }
+        }
+
+        // 首次加载：正常优化，同时把优化后的模型写入临时文件，成功后再替换为正式缓存
+        File tempFile = OptimizedModelCache.tempFile(cacheFile);
+        sessionOptions.addConfigEntry(SAVE_MODEL_FORMAT, format);
+        sessionOptions.setOptimizedModelFilePath(tempFile.getAbsolutePath());
+        OrtSession created = openSession(modelFile, modelBytes, sessionOptions);
+        OptimizedModelCache.commit(tempFile, cacheFile, modelName);
+        return created;
+    }
+
+    private OrtSession openSession(File modelFile, byte[] modelBytes, SessionOptions sessionOptions) throws OrtException {
+        if (modelBytes != null) {
+            return env.createSession(modelBytes, sessionOptions);
+        }
+        return env.createSession(modelFile.getAbsolutePath(), sessionOptions);
+    }
+
+    /**
+     * 根据文件扩展名或格式名判断是否为 ORT 格式
+     */
+    static boolean isOrtFormat(String nameOrFormat) {
+        if (nameOrFormat == null) {
+            return false;
+        }
+        String lower = nameOrFormat.toLowerCase(Locale.ROOT);
+        return lower.equals("ort") || lower.endsWith(".ort");
+    }
+
+    /**
+     * 未配置 providers 时，按 useCuda/useDml 生成设备列表
+     */
+    private static List<ProviderConfig> legacyProviders(OrtInferConfig ortInferConfig) {
+        List<ProviderConfig> providers = new ArrayList<>();
+        if (ortInferConfig.useCuda) {
+            providers.add(ProviderConfig.cuda(ortInferConfig.getDeviceId()));
+        }
+        if (ortInferConfig.useDml) {
+            providers.add(ProviderConfig.dml(ortInferConfig.getDeviceId()));
+        }
+        providers.add(ProviderConfig.cpu());
+        return providers;
+    }
+
+    /**
+     * 依次注册执行设备，当前环境不支持或注册失败的设备记录日志后跳过；列表中没有 CPU 时在最后补上
+     *
+     * @return 实际生效的设备名列表
+     */
+    private List<String> addProviders(SessionOptions sessionOptions, List<ProviderConfig> providers,
+                                      OrtInferConfig ortInferConfig) throws OrtException {
+        EnumSet<OrtProvider> availableProviders = OrtEnvironment.getAvailableProviders();
+        List<String> active = new ArrayList<>();
+        for (ProviderConfig provider : providers) {
+            String name = provider.getName() == null ? "" : provider.getName().toLowerCase(Locale.ROOT);
+            OrtProvider ortProvider = toOrtProvider(name);
+            if (ortProvider == null) {
+                logger.warning("Unknown execution provider, skipped: " + provider.getName());
+                continue;
+            }
+            if (!availableProviders.contains(ortProvider)) {
+                logger.warning(String.format("Execution provider %s is not available in this build, skipped.", name));
+                continue;
+            }
+            if (active.contains(name)) {
+                continue;
+            }
+            try {
+                addProvider(sessionOptions, name, provider, ortInferConfig);
+                active.add(name);
+                logger.info(String.format("%s EP added to session options, options: %s.", name, provider.getOptions()));
+            } catch (OrtException | IllegalArgumentException e) {
+                // 设备不可用或选项配置有误时跳过，回退到列表中的下一个设备或 CPU
+                logger.warning(String.format("Failed to add %s EP, skipped: %s", name, e.getMessage()));
+            }
+        }
+        if (!active.contains(ProviderConfig.CPU)) {
+            sessionOptions.addCPU(ortInferConfig.useArena);
+            active.add(ProviderConfig.CPU);
+            logger.info("CPU EP added to session options.");
+        }
+        return active;
+    }
+
+    private void addProvider(SessionOptions sessionOptions, String name, ProviderConfig provider,
+                             OrtInferConfig ortInferConfig) throws OrtException {
+        Map<String, String> options = provider.getOptions() == null
+                ? Collections.emptyMap() : provider.getOptions();
+        switch (name) {
+            case ProviderConfig.CUDA:
+                OrtCUDAProviderOptions cudaOptions = new OrtCUDAProviderOptions(provider.getDeviceId());
+                for (Map.Entry<String, String> entry : options.entrySet()) {
+                    cudaOptions.add(entry.getKey(), entry.getValue());
+                }
+                sessionOptions.addCUDA(cudaOptions);
+                break;
+            case ProviderConfig.DML:
+                sessionOptions.addDirectML(provider.getDeviceId());
+                break;
+            case ProviderConfig.XNNPACK:
+                sessionOptions.addXnnpack(options);
+                if (!OrtEnvHolder.hasGlobalThreadPool() && ortInferConfig.intraOpNumThreads < 1) {
+                    // XNNPACK 自带线程池，ORT 自身的 intra-op 线程只跑剩余算子，避免两套线程池空转抢核
+                    sessionOptions.setIntraOpNumThreads(1);
+                    sessionOptions.addConfigEntry(ALLOW_INTRA_OP_SPINNING, "0");
+                }
+                break;
+            case ProviderConfig.NNAPI:
+                EnumSet<NNAPIFlags> flags = EnumSet.noneOf(NNAPIFlags.class);
+                for (Map.Entry<String, String> entry : options.entrySet()) {
+                    // 先校验所有选项名，拼写错误的选项不会被静默忽略
+                    NNAPIFlags flag = nnapiFlag(entry.getKey());
+                    if ("1".equals(entry.getValue()) || "true".equalsIgnoreCase(entry.getValue())) {
+                        flags.add(flag);
+                    }
+                }
+                sessionOptions.addNnapi(flags);
+                break;
+            default:
+                sessionOptions.addCPU(ortInferConfig.useArena);
+                break;
+        }
+    }
+
+    private static NNAPIFlags nnapiFlag(String key) {
+        for (NNAPIFlags flag : NNAPIFlags.values()) {
+            if (flag.name().equalsIgnoreCase(key)) {
+                return flag;
+            }
+        }
+        throw new IllegalArgumentException("Unknown NNAPI option: " + key + ", expected one of "
+                + Arrays.toString(NNAPIFlags.values()));
+    }
+
+    private static OrtProvider toOrtProvider(String name) {
+        switch (name) {
+            case ProviderConfig.CPU:
+                return OrtProvider.CPU;
+            case ProviderConfig.CUDA:
+                return OrtProvider.CUDA;
+            case ProviderConfig.DML:
+                return OrtProvider.DIRECT_ML;
+            case ProviderConfig.XNNPACK:
+                return OrtProvider.XNNPACK;
+            case ProviderConfig.NNAPI:
+                return OrtProvider.NNAPI;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 找到列表中第一个实际生效的设备，没有时返回 CPU
+     */
+    private ProviderConfig firstActive(List<ProviderConfig> providers) {
+        for (ProviderConfig provider : providers) {
+            if (provider.getName() != null
+                    && activeProviders.contains(provider.getName().toLowerCase(Locale.ROOT))) {
+                return provider;
+            }
+        }
+        return ProviderConfig.cpu();
+    }
+
+    private static String deviceTag(ProviderConfig provider) {
+        String name = provider.getName().toLowerCase(Locale.ROOT);
+        if (ProviderConfig.CUDA.equals(name) || ProviderConfig.DML.equals(name)) {
+            return name + provider.getDeviceId();
+        }
+        return name;
+    }
+
+    private static boolean isCacheable(ProviderConfig provider) {
+        String name = provider.getName().toLowerCase(Locale.ROOT);
+        return !ProviderConfig.XNNPACK.equals(name) && !ProviderConfig.NNAPI.equals(name);
+    }
+
+    /**
+     * 实际生效的执行设备，按优先级排列，最后一个总是 cpu
+     */
+    public List<String> getProviders() {
+        return activeProviders;
+    }
+
     /**
      * 初始化 SessionOptions
      */
@@ -109,18 +397,37 @@ public class OrtInferSession {
         SessionOptions sessOpt = new SessionOptions();
         int cpuNums = Runtime.getRuntime().availableProcessors();
 
-        int intraOpNumThreads = ortInferConfig.intraOpNumThreads;
-        if (intraOpNumThreads >= 1 && intraOpNumThreads <= cpuNums) {
-            sessOpt.setIntraOpNumThreads(intraOpNumThreads);
-        }
-        int interOpNumThreads = ortInferConfig.interOpNumThreads;
-        if (interOpNumThreads >= 1 && interOpNumThreads <= cpuNums) {
-            sessOpt.setInterOpNumThreads(interOpNumThreads);
+        if (OrtEnvHolder.hasGlobalThreadPool()) {
+            // 使用进程级共享线程池，会话不再创建自己的线程，intraOpNumThreads/interOpNumThreads 不再生效
+            sessOpt.disablePerSessionThreads();
+        } else {
+            int intraOpNumThreads = ortInferConfig.intraOpNumThreads;
+            if (intraOpNumThreads >= 1 && intraOpNumThreads <= cpuNums) {
+                sessOpt.setIntraOpNumThreads(intraOpNumThreads);
+            }
+            int interOpNumThreads = ortInferConfig.interOpNumThreads;
+            if (interOpNumThreads >= 1 && interOpNumThreads <= cpuNums) {
+                sessOpt.setInterOpNumThreads(interOpNumThreads);
+            }
         }
         // 禁用 arena 内存池的扩展策略
         sessOpt.setCPUArenaAllocator(ortInferConfig.useArena);
         // 启用图优化
         sessOpt.setOptimizationLevel(SessionOptions.OptLevel.ALL_OPT);
+        // 算子级 profiling，ONNX Runtime 在文件名前缀后追加时间戳
+        String profilingDir = ortInferConfig.getProfilingDir();
+        if (profilingDir != null) {
+            File dir = new File(profilingDir);
+            if (dir.isDirectory() || dir.mkdirs()) {
+                String modelName = new File(ortInferConfig.getModelPath()).getName();
+                int dot = modelName.lastIndexOf('.');
+                String prefix = (dot > 0 ? modelName.substring(0, dot) : modelName) + "_" + PROFILE_SEQ.incrementAndGet();
+                sessOpt.enableProfiling(new File(dir, prefix).getAbsolutePath());
+                this.profiling = true;
+            } else {
+                logger.warning("Profiling dir unavailable: " + profilingDir);
+            }
+        }
         // 日志等级
         sessOpt.setSessionLogVerbosityLevel(4);
         sessOpt.setSessionLogLevel(OrtLoggingLevel.ORT_LOGGING_LEVEL_FATAL);
@@ -128,7 +435,8 @@ public class OrtInferSession {
     }
 
     /**
-     * 执行推理
+     * 执行推理（兼容旧接口）
+     * 将多维数组展平到 direct buffer 后转交给 {@link #run(FloatBuffer, long[])}
      *
      * @param inputData 传入的输入张量数据(形状需根据模型而定)
      * @return 推理结果 (形状需根据模型而定)
@@ -139,23 +447,29 @@ public class OrtInferSession {
         int dim3 = inputData[0][0].length;
         int dim4 = inputData[0][0][0].length;
 
-        // 一维数组的大小
-        int totalSize = dim1 * dim2 * dim3 * dim4;
-
-        // 使用流将多维数组转为一维数组
-        float[] dataArray = new float[totalSize];
-        int index = 0;
+        long[] shape = new long[]{dim1, dim2, dim3, dim4};
+        FloatBuffer buffer = ensureCapacity(null, dim1 * dim2 * dim3 * dim4);
         for (float[][][] item1 : inputData) {
             for (float[][] item2 : item1) {
                 for (float[] item3 : item2) {
-                    System.arraycopy(item3, 0, dataArray, index, item3.length);
-                    index += item3.length;
+                    buffer.put(item3);
                 }
             }
         }
+        buffer.rewind();
+        return run(buffer, shape);
+    }
 
-        long[] shape = new long[]{dim1, dim2, dim3, dim4};
-        try (OnnxTensor tensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(dataArray), shape)) {
+    /**
+     * 执行推理，直接使用调用方填充好的 FloatBuffer 作为输入
+     * 若传入 direct buffer，ONNX Runtime 会直接引用其内存，不再额外拷贝
+     *
+     * @param inputBuffer 输入数据，position 到 limit 之间的元素个数需与 shape 一致
+     * @param shape       输入张量形状，如 [N, C, H, W]
+     * @return 推理结果 (形状需根据模型而定)
+     */
+    public Object run(FloatBuffer inputBuffer, long[] shape) throws OrtException {
+        try (OnnxTensor tensor = OnnxTensor.createTensor(env, inputBuffer, shape)) {
             try (Result result = session.run(Collections.singletonMap(inputName, tensor))) {
                 // 获取输出张量的值
                 OnnxTensor onnxValue = (OnnxTensor) result.get(0);
@@ -164,6 +478,288 @@ public class OrtInferSession {
         }
     }
 
+    /**
+     * 获取会话内按形状复用的输入 buffer，调用方填充后传给 {@link #runFlat(FloatBuffer, long[])}
+     * 同一会话同一时刻只能有一个调用方使用
+     *
+     * @param shape 输入张量形状，如 [N, C, H, W]
+     * @return position 为 0、limit 为元素个数的 direct buffer
+     */
+    public FloatBuffer acquireInput(long[] shape) {
+        return tensorPool.acquireInput(shape);
+    }
+
+    /**
+     * 获取会话内按形状复用的 FP16 输入 buffer，仅用于输入为 FP16 的模型，元素为 {@link Float16#toHalf(float)} 的结果
+     *
+     * @param shape 输入张量形状，如 [N, C, H, W]
+     * @return position 为 0、limit 为元素个数的 direct buffer
+     */
+    public ShortBuffer acquireHalfInput(long[] shape) {
+        return tensorPool.acquireHalfInput(shape);
+    }
+
+    /**
+     * 按模型的输入类型获取输入 buffer：FP16 模型返回 ShortBuffer，其余返回 FloatBuffer
+     * 预处理直接按对应精度写入，FP16 模型不再经过 float 中转
+     *
+     * @param shape 输入张量形状，如 [N, C, H, W]
+     */
+    public Buffer acquireModelInput(long[] shape) {
+        return isHalfInput() ? acquireHalfInput(shape) : acquireInput(shape);
+    }
+
+    /**
+     * 模型输入是否为 FP16
+     */
+    public boolean isHalfInput() {
+        return inputType == OnnxJavaType.FLOAT16;
+    }
+
+    /**
+     * 执行推理，以扁平 FloatBuffer + 形状的方式返回第一个输出
+     * 避免 getValue() 生成大量嵌套小数组，后处理直接按下标读取
+     * <p>
+     * 若输入来自 {@link #acquireInput(long[])}，则复用缓存的输入张量；该形状第二次运行起，
+     * 输出直接写入池中固定的输出内存；FP16 输出逐个转换为 float。返回的数据在该会话下一次推理前有效。
+     *
+     * @param inputBuffer 输入数据，FloatBuffer 或 FP16 模型的 ShortBuffer，position 到 limit 之间的元素个数需与 shape 一致
+     * @param shape       输入张量形状，如 [N, C, H, W]
+     * @return 扁平的输出张量
+     */
+    public FloatTensor runFlat(Buffer inputBuffer, long[] shape) throws OrtException {
+        return runFlat(inputBuffer, shape, null);
+    }
+
+    /**
+     * 执行推理，同 {@link #runFlat(Buffer, long[])}，可通过取消令牌中止正在进行的推理
+     *
+     * @param inputBuffer 输入数据，position 到 limit 之间的元素个数需与 shape 一致
+     * @param shape       输入张量形状，如 [N, C, H, W]
+     * @param token       取消令牌，可为 null
+     * @return 扁平的输出张量
+     * @throws CancellationToken.CancelledException 推理前或推理中被取消
+     */
+    public FloatTensor runFlat(Buffer inputBuffer, long[] shape, CancellationToken token) throws OrtException {
+        if (token == null) {
+            return runPooled(inputBuffer, shape, null);
+        }
+        token.throwIfCancelled();
+        RunOptions runOptions = new RunOptions();
+        // 取消回调可能与推理结束并发执行，加锁保证 RunOptions 关闭后不再被访问
+        Object lock = new Object();
+        boolean[] finished = {false};
+        Runnable terminate = () -> {
+            synchronized (lock) {
+                if (!finished[0]) {
+                    try {
+                        runOptions.setTerminate(true);
+                    } catch (OrtException e) {
+                        logger.warning("Failed to terminate run: " + e.getMessage());
+                    }
+                }
+            }
+        };
+        token.addListener(terminate);
+        try {
+            return runPooled(inputBuffer, shape, runOptions);
+        } catch (OrtException e) {
+            token.throwIfCancelled();
+            throw e;
+        } finally {
+            token.removeListener(terminate);
+            synchronized (lock) {
+                finished[0] = true;
+                runOptions.close();
+            }
+        }
+    }
+
+    private FloatTensor runPooled(Buffer inputBuffer, long[] shape, RunOptions runOptions) throws OrtException {
+        boolean pooled;
+        OnnxTensor tensor;
+        if (inputBuffer instanceof ShortBuffer) {
+            if (!isHalfInput()) {
+                throw new IllegalArgumentException("模型输入不是 FP16: " + inputType);
+            }
+            ShortBuffer halfBuffer = (ShortBuffer) inputBuffer;
+            pooled = tensorPool.isPooledHalfInput(halfBuffer);
+            tensor = pooled ? tensorPool.halfInputTensor(shape) : createHalfTensor(halfBuffer, shape);
+        } else {
+            // 输入不是 float32 时需转换，不能复用池中的 float 输入张量
+            FloatBuffer floatBuffer = (FloatBuffer) inputBuffer;
+            pooled = inputType == OnnxJavaType.FLOAT && tensorPool.isPooledInput(floatBuffer);
+            tensor = pooled ? tensorPool.inputTensor(shape) : createInputTensor(floatBuffer, shape);
+        }
+        try {
+            Map<String, OnnxTensor> inputs = Collections.singletonMap(inputName, tensor);
+            long[] outputShape = tensorPool.outputShape(shape);
+            if (outputShape != null && outputType == OnnxJavaType.FLOAT) {
+                // 输出形状已知，直接写入固定的输出张量
+                OnnxTensor outputTensor = tensorPool.outputTensor(shape);
+                Result result = session.run(inputs, Collections.emptySet(),
+                        Collections.singletonMap(outputName, outputTensor), runOptions);
+                try {
+                    return new FloatTensor(tensorPool.outputView(outputShape), outputShape);
+                } finally {
+                    result.close();
+                }
+            }
+            try (Result result = session.run(inputs, Collections.singleton(outputName), Collections.emptyMap(), runOptions)) {
+                OnnxTensor onnxValue = (OnnxTensor) result.get(0);
+                outputShape = onnxValue.getInfo().getShape();
+                FloatBuffer data = outputType == OnnxJavaType.FLOAT16
+                        ? tensorPool.storeHalfOutput(shape, outputShape, onnxValue.getShortBuffer())
+                        : tensorPool.storeOutput(shape, outputShape, toFloatBuffer(onnxValue));
+                return new FloatTensor(data, outputShape);
+            }
+        } finally {
+            if (!pooled) {
+                tensor.close();
+            }
+        }
+    }
+
+    /**
+     * 按模型的输入类型创建输入张量
+     */
+    private OnnxTensor createInputTensor(FloatBuffer inputBuffer, long[] shape) throws OrtException {
+        if (inputType == OnnxJavaType.FLOAT) {
+            return OnnxTensor.createTensor(env, inputBuffer, shape);
+        }
+        if (inputType == OnnxJavaType.FLOAT16) {
+            ByteBuffer bytes = ByteBuffer.allocateDirect(inputBuffer.remaining() * Short.BYTES)
+                    .order(ByteOrder.nativeOrder());
+            Float16.toHalf(inputBuffer, bytes.asShortBuffer());
+            return OnnxTensor.createTensor(env, bytes, shape, OnnxJavaType.FLOAT16);
+        }
+        // DOUBLE
+        FloatBuffer src = inputBuffer.duplicate();
+        DoubleBuffer converted = ByteBuffer.allocateDirect(src.remaining() * Double.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        while (src.hasRemaining()) {
+            converted.put(src.get());
+        }
+        converted.rewind();
+        return OnnxTensor.createTensor(env, converted, shape);
+    }
+
+    /**
+     * 由调用方提供的 FP16 数据创建输入张量，FP16 张量只能由 native 字节序的 ByteBuffer 创建
+     */
+    private OnnxTensor createHalfTensor(ShortBuffer halfBuffer, long[] shape) throws OrtException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(halfBuffer.remaining() * Short.BYTES)
+                .order(ByteOrder.nativeOrder());
+        bytes.asShortBuffer().put(halfBuffer.duplicate());
+        return OnnxTensor.createTensor(env, bytes, shape, OnnxJavaType.FLOAT16);
+    }
+
+    /**
+     * 将输出张量转换为 float，整型输出按原值转换（量化模型的输出通常已反量化为 float）
+     */
+    private static FloatBuffer toFloatBuffer(OnnxTensor tensor) {
+        OnnxJavaType type = tensor.getInfo().type;
+        if (type == OnnxJavaType.FLOAT) {
+            return tensor.getFloatBuffer();
+        }
+        int size = (int) tensor.getInfo().getNumElements();
+        FloatBuffer out = FloatBuffer.allocate(size);
+        switch (type) {
+            case DOUBLE:
+                DoubleBuffer doubles = tensor.getDoubleBuffer();
+                while (doubles.hasRemaining()) {
+                    out.put((float) doubles.get());
+                }
+                break;
+            case FLOAT16:
+                Float16.toFloat(tensor.getShortBuffer(), out);
+                out.position(size);
+                break;
+            case INT8:
+            case UINT8:
+                ByteBuffer bytes = tensor.getByteBuffer();
+                boolean unsigned = type == OnnxJavaType.UINT8;
+                while (bytes.hasRemaining()) {
+                    byte b = bytes.get();
+                    out.put(unsigned ? (b & 0xFF) : b);
+                }
+                break;
+            case INT32:
+                IntBuffer ints = tensor.getIntBuffer();
+                while (ints.hasRemaining()) {
+                    out.put(ints.get());
+                }
+                break;
+            case INT64:
+                LongBuffer longs = tensor.getLongBuffer();
+                while (longs.hasRemaining()) {
+                    out.put(longs.get());
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("不支持的模型输出类型: " + type);
+        }
+        out.flip();
+        return out;
+    }
+
+    private static OnnxJavaType tensorType(NodeInfo nodeInfo) {
+        if (nodeInfo.getInfo() instanceof TensorInfo) {
+            return ((TensorInfo) nodeInfo.getInfo()).type;
+        }
+        throw new UnsupportedOperationException("模型输入输出需为张量: " + nodeInfo.getName());
+    }
+
+    private static boolean isSupportedInput(OnnxJavaType type) {
+        return type == OnnxJavaType.FLOAT || type == OnnxJavaType.FLOAT16 || type == OnnxJavaType.DOUBLE;
+    }
+
+    /**
+     * 模型输入的数据类型
+     */
+    public OnnxJavaType getInputType() {
+        return inputType;
+    }
+
+    /**
+     * 模型第一个输出的数据类型
+     */
+    public OnnxJavaType getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * 准备一个可容纳 size 个元素的 direct FloatBuffer，容量足够时复用传入的 buffer
+     *
+     * @param buffer 之前使用的 buffer，可为 null
+     * @param size   需要的元素个数
+     * @return position 为 0、limit 为 size 的 buffer
+     */
+    public static FloatBuffer ensureCapacity(FloatBuffer buffer, int size) {
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * 结束 profiling 并写出文件，之后的推理不再记录
+     *
+     * @return profiling 文件路径，未启用 profiling 或已结束时返回 null
+     */
+    public String endProfiling() throws OrtException {
+        if (!profiling) {
+            return null;
+        }
+        profiling = false;
+        return session.endProfiling();
+    }
+
     /**
      * 获取模型的输入名字列表
      */
@@ -215,39 +811,149 @@ public class OrtInferSession {
         }
     }
 
-    private byte[] loadModel(InputStream modelInputStream) {
-        try (
-                InputStream inputStream = modelInputStream;
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream()
-        ) {
-            int nRead;
-            byte[] data = new byte[1024];
-
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
+    /**
+     * 读取 assets 中的模型到内存
+     * 未压缩的 asset 可获取准确长度，一次性读满；压缩的 asset 退化为按流读取
+     */
+    private static byte[] readAsset(Context context, String assetFileName) throws IOException {
+        long length = assetLength(context, assetFileName);
+        try (InputStream in = context.getAssets().open(assetFileName)) {
+            if (length >= 0) {
+                byte[] data = new byte[(int) length];
+                new DataInputStream(in).readFully(data);
+                return data;
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+            byte[] chunk = new byte[COPY_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, bytesRead);
             }
-
-            buffer.flush();
             return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * 获取 asset 的字节长度，asset 被压缩时无法获取，返回 -1
+     */
+    private static long assetLength(Context context, String assetFileName) {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(assetFileName)) {
+            return fd.getLength();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            return -1;
         }
     }
 
     // 把 assets 中的模型文件复制到 cache 目录
-    private File copyAssetToCache(Context context, String assetFileName) throws IOException {
+    // 先写入临时文件再原子重命名，避免中途退出留下不完整的副本；复制的同时计算 SHA-256，
+    // 与副本长度、APK 更新时间一起写入旁边的记录文件。之后启动时长度与更新时间都与记录一致则直接复用，
+    // 不再读取模型；记录缺失或不一致（如应用更新后）时才比较 asset 与副本的 SHA-256，内容一致只更新记录
+    private static Pair<File, String> copyAssetToCache(Context context, String assetFileName) throws IOException {
         File cacheFile = new File(context.getCacheDir(), assetFileName);
-        if (!cacheFile.exists()) {
+        File recordFile = new File(cacheFile.getPath() + EXTRACT_RECORD_SUFFIX);
+        long assetLength = assetLength(context, assetFileName);
+        long updateTime = packageUpdateTime(context);
+        String recordedHash = readExtractRecord(recordFile, cacheFile, assetLength, updateTime);
+        if (recordedHash != null) {
+            return Pair.of(cacheFile, recordedHash);
+        }
+        if (cacheFile.exists() && (assetLength < 0 || cacheFile.length() == assetLength)) {
+            String assetHash;
+            try (InputStream in = context.getAssets().open(assetFileName)) {
+                assetHash = OptimizedModelCache.sha256(in);
+            }
+            if (assetHash.equals(OptimizedModelCache.sha256(cacheFile))) {
+                writeExtractRecord(recordFile, cacheFile.length(), updateTime, assetHash);
+                return Pair.of(cacheFile, assetHash);
+            }
+        }
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+
+        // 先删除旧记录，中途退出时不会留下描述旧副本的记录
+        recordFile.delete();
+        File tempFile = new File(parent, cacheFile.getName() + "." + System.nanoTime() + ".tmp");
+        try {
+            String assetHash;
             try (InputStream in = context.getAssets().open(assetFileName);
-                 OutputStream out = new FileOutputStream(cacheFile)) {
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
+                 OutputStream out = new FileOutputStream(tempFile)) {
+                assetHash = OptimizedModelCache.copyWithSha256(in, out);
+            }
+            if (assetLength >= 0 && tempFile.length() != assetLength) {
+                throw new IOException("模型复制后长度不符: " + assetFileName);
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeExtractRecord(recordFile, cacheFile.length(), updateTime, assetHash);
+            return Pair.of(cacheFile, assetHash);
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * 读取解压记录，长度与 APK 更新时间都一致时返回记录的 SHA-256，否则返回 null
+     */
+    private static String readExtractRecord(File recordFile, File cacheFile, long assetLength, long updateTime) {
+        if (updateTime < 0 || !recordFile.isFile() || !cacheFile.isFile()) {
+            return null;
+        }
+        try {
+            String[] fields = new String(Files.readAllBytes(recordFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+            if (fields.length != 3) {
+                return null;
             }
+            long length = Long.parseLong(fields[0]);
+            if (length != cacheFile.length() || (assetLength >= 0 && length != assetLength)
+                    || Long.parseLong(fields[1]) != updateTime) {
+                return null;
+            }
+            return fields[2];
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入解压记录：<长度> <APK 更新时间> <SHA-256>，写入失败只影响下次启动是否重新校验
+     */
+    private static void writeExtractRecord(File recordFile, long length, long updateTime, String hash) {
+        if (updateTime < 0) {
+            return;
+        }
+        try {
+            Files.write(recordFile.toPath(), (length + " " + updateTime + " " + hash).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warning("Failed to write model extract record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * APK 的安装或更新时间，应用更新后 assets 可能变化；无法获取时返回 -1，此时每次启动都校验内容
+     */
+    private static long packageUpdateTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 释放张量池与推理会话
+     */
+    @Override
+    public void close() {
+        tensorPool.close();
+        try {
+            session.close();
+        } catch (OrtException e) {
+            throw new RuntimeException(e);
         }
-        return cacheFile;
     }
 
 }
@@ -0,0 +1,186 @@
+package io.github.hzkitty.utils;
+
+import android.content.Context;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.OrtException;
+import io.github.hzkitty.entity.OrtInferConfig;
+
+/**
+ * 同一模型的 OrtInferSession 池，用于并发推理
+ * <p>
+ * 每个会话各自持有张量池，借出期间由借用方独占；通过 {@link #borrow()} 借出、{@link #release(OrtInferSession)} 归还。
+ * 池大小大于 1 且未指定 intraOpNumThreads 时，按 CPU 核数平分给各会话，避免单个请求占满所有核心。
+ */
+public class OrtInferSessionPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger("OrtInferSessionPool");
+
+    private final List<OrtInferSession> sessions;
+    private final BlockingQueue<OrtInferSession> idle;
+    // 借出全部会话的操作（预热、结束 profiling）互斥执行，避免两个操作各自借到一部分会话后互相等待
+    private final Object exclusiveLock = new Object();
+
+    public OrtInferSessionPool(Context context, OrtInferConfig config) {
+        // 在副本上调整线程数，不修改调用方的配置
+        OrtInferConfig ortInferConfig = new OrtInferConfig(config);
+        int poolSize = Math.max(1, ortInferConfig.getSessionPoolSize());
+        if (poolSize > 1 && ortInferConfig.getIntraOpNumThreads() < 1 && !OrtEnvHolder.hasGlobalThreadPool()) {
+            int cpuNums = Runtime.getRuntime().availableProcessors();
+            ortInferConfig.setIntraOpNumThreads(Math.max(1, cpuNums / poolSize));
+        }
+
+        List<OrtInferSession> created = new ArrayList<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                created.add(new OrtInferSession(context, ortInferConfig));
+            }
+        } catch (RuntimeException e) {
+            for (OrtInferSession session : created) {
+                session.close();
+            }
+            throw e;
+        }
+        this.sessions = Collections.unmodifiableList(created);
+        this.idle = new ArrayBlockingQueue<>(poolSize, false, created);
+        logger.info(String.format("OrtInferSessionPool created, size: %d, intraOpNumThreads: %d.",
+                poolSize, ortInferConfig.getIntraOpNumThreads()));
+    }
+
+    /**
+     * 借出一个空闲会话，若全部被占用则阻塞等待
+     */
+    public OrtInferSession borrow() {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待推理会话时被中断", e);
+        }
+    }
+
+    /**
+     * 归还借出的会话
+     */
+    public void release(OrtInferSession session) {
+        if (session != null) {
+            idle.offer(session);
+        }
+    }
+
+    /**
+     * 用全 0 输入在池中每个会话上运行指定形状，使 ONNX Runtime 提前完成该形状的内存分配与算子选择
+     * 会借出全部会话，直到所有会话空闲后才开始；与其他借出全部会话的操作互斥
+     *
+     * @param shape      输入张量形状
+     * @param iterations 每个会话运行的次数
+     * @return 每次运行的耗时（秒），按会话、迭代顺序排列
+     */
+    public List<Double> warmUp(long[] shape, int iterations) throws OrtException {
+        synchronized (exclusiveLock) {
+            List<OrtInferSession> borrowed = new ArrayList<>(sessions.size());
+            List<Double> elapse = new ArrayList<>();
+            try {
+                borrowAll(borrowed);
+                for (OrtInferSession session : borrowed) {
+                    for (int i = 0; i < Math.max(1, iterations); i++) {
+                        Buffer input = session.acquireModelInput(shape);
+                        zeroFill(input);
+                        long start = System.nanoTime();
+                        session.runFlat(input, shape);
+                        elapse.add((System.nanoTime() - start) / 1e9);
+                    }
+                }
+            } finally {
+                for (OrtInferSession session : borrowed) {
+                    release(session);
+                }
+            }
+            return elapse;
+        }
+    }
+
+    /**
+     * 借出池中全部会话，需持有 exclusiveLock；单个请求借出的会话总会归还，因此不会无限等待
+     */
+    private void borrowAll(List<OrtInferSession> borrowed) {
+        for (int i = 0; i < sessions.size(); i++) {
+            borrowed.add(borrow());
+        }
+    }
+
+    private static void zeroFill(Buffer input) {
+        if (input instanceof ShortBuffer) {
+            ShortBuffer half = (ShortBuffer) input;
+            while (half.hasRemaining()) {
+                half.put((short) 0);
+            }
+        } else {
+            FloatBuffer floats = (FloatBuffer) input;
+            while (floats.hasRemaining()) {
+                floats.put(0f);
+            }
+        }
+        input.rewind();
+    }
+
+    /**
+     * 结束池中所有会话的 profiling，会等待所有会话空闲；与预热互斥
+     *
+     * @return 各会话生成的 profiling 文件路径
+     */
+    public List<String> endProfiling() throws OrtException {
+        synchronized (exclusiveLock) {
+            List<OrtInferSession> borrowed = new ArrayList<>(sessions.size());
+            List<String> files = new ArrayList<>();
+            try {
+                borrowAll(borrowed);
+                for (OrtInferSession session : borrowed) {
+                    String file = session.endProfiling();
+                    if (file != null) {
+                        files.add(file);
+                    }
+                }
+            } finally {
+                for (OrtInferSession session : borrowed) {
+                    release(session);
+                }
+            }
+            return files;
+        }
+    }
+
+    /**
+     * 第一个会话，仅用于读取模型元数据等只读操作
+     */
+    public OrtInferSession primary() {
+        return sessions.get(0);
+    }
+
+    /**
+     * 池中的全部会话
+     */
+    public List<OrtInferSession> getSessions() {
+        return sessions;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        for (OrtInferSession session : sessions) {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.hzkitty.utils;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import io.github.hzkitty.entity.OrtInferConfig;
+
+/**
+ * 进程级的会话注册表，按模型路径、会话选项与线程设置共享 OrtInferSessionPool
+ * <p>
+ * 多个 RapidOCR 实例使用相同模型和推理参数时只加载一份模型；
+ * 采用引用计数，最后一个使用方 {@link #release(OrtInferSessionPool)} 后关闭会话。
+ */
+public final class OrtSessionRegistry {
+
+    private static final Logger logger = Logger.getLogger("OrtSessionRegistry");
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    private OrtSessionRegistry() {
+    }
+
+    /**
+     * 获取（必要时创建）与配置对应的共享会话池，引用计数 +1
+     */
+    public static OrtInferSessionPool acquire(Context context, OrtInferConfig ortInferConfig) {
+        String key = ortInferConfig.getSessionKey();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, Entry::new);
+            entry.refCount++;
+        }
+        try {
+            // 只锁定当前条目，不同模型可以并行加载
+            return entry.getOrCreate(context, ortInferConfig);
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entry.refCount--;
+                if (entry.refCount == 0 && entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 归还会话池，引用计数 -1，归零时关闭并移除
+     */
+    public static void release(OrtInferSessionPool pool) {
+        if (pool == null) {
+            return;
+        }
+        Entry toClose = null;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.pool == pool) {
+                    entry.refCount--;
+                    if (entry.refCount <= 0) {
+                        iterator.remove();
+                        toClose = entry;
+                    }
+                    break;
+                }
+            }
+        }
+        if (toClose != null) {
+            logger.info("Closing shared session pool: " + toClose.key);
+            toClose.pool.close();
+        }
+    }
+
+    /**
+     * 当前共享的会话池数量
+     */
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        int refCount;
+        volatile OrtInferSessionPool pool;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        synchronized OrtInferSessionPool getOrCreate(Context context, OrtInferConfig ortInferConfig) {
+            if (pool == null) {
+                pool = new OrtInferSessionPool(context, ortInferConfig);
+            } else {
+                logger.info("Reusing shared session pool: " + key);
+            }
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.hzkitty.utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.hzkitty.entity.OpProfile;
+import io.github.hzkitty.entity.ProfileSummary;
+
+/**
+ * 解析 ONNX Runtime 生成的 profiling JSON，按节点汇总算子耗时
+ * <p>
+ * 文件为 Chrome trace 格式的事件数组，只统计 cat 为 "Node"、name 以 "_kernel_time" 结尾的事件。
+ */
+public final class ProfileParser {
+
+    private static final String KERNEL_TIME_SUFFIX = "_kernel_time";
+
+    private ProfileParser() {
+    }
+
+    /**
+     * 汇总多个 profiling 文件
+     *
+     * @param stage        模块名
+     * @param profileFiles profiling 文件路径
+     * @param topN         返回耗时最多的前 N 个算子，小于 1 时返回全部
+     */
+    public static ProfileSummary summarize(String stage, List<String> profileFiles, int topN) throws IOException {
+        Map<String, OpProfile> ops = new LinkedHashMap<>();
+        for (String file : profileFiles) {
+            String content = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+            parse(content, ops);
+        }
+        List<OpProfile> sorted = new ArrayList<>(ops.values());
+        sorted.sort((a, b) -> Long.compare(b.getTotalMicros(), a.getTotalMicros()));
+        long totalMicros = 0;
+        for (OpProfile op : sorted) {
+            totalMicros += op.getTotalMicros();
+        }
+        if (topN > 0 && sorted.size() > topN) {
+            sorted = new ArrayList<>(sorted.subList(0, topN));
+        }
+        return new ProfileSummary(stage, sorted, totalMicros, profileFiles);
+    }
+
+    /**
+     * 解析单个 profiling 文件内容，累加到 ops 中
+     */
+    static void parse(String content, Map<String, OpProfile> ops) throws IOException {
+        try {
+            JSONArray events = new JSONArray(content);
+            for (int i = 0; i < events.length(); i++) {
+                JSONObject event = events.optJSONObject(i);
+                if (event == null || !"Node".equals(event.optString("cat"))) {
+                    continue;
+                }
+                String name = event.optString("name");
+                if (!name.endsWith(KERNEL_TIME_SUFFIX)) {
+                    continue;
+                }
+                String nodeName = name.substring(0, name.length() - KERNEL_TIME_SUFFIX.length());
+                JSONObject args = event.optJSONObject("args");
+                String opType = args == null ? "" : args.optString("op_name", "");
+                OpProfile op = ops.get(nodeName);
+                if (op == null) {
+                    op = new OpProfile(nodeName, opType);
+                    ops.put(nodeName, op);
+                }
+                op.add(event.optLong("dur"));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid profiling file", e);
+        }
+    }
+}
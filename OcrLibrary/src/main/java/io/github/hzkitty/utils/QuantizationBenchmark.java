@@ -0,0 +1,148 @@
+package io.github.hzkitty.utils;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import io.github.hzkitty.RapidOCR;
+import io.github.hzkitty.entity.OcrConfig;
+import io.github.hzkitty.entity.OcrResult;
+import io.github.hzkitty.entity.Pair;
+import io.github.hzkitty.entity.QuantizationReport;
+
+/**
+ * 在本地标注图片集上对比 FP32 与量化模型的耗时、内存与字符准确率
+ * <p>
+ * 标注目录中每张图片对应一个同名 .txt 文件，内容为图片中的全部文字；比较时忽略空白字符。
+ * 两组模型依次加载、识别并释放，内存为进程常驻内存（VmRSS）的增量，只作为相对参考。
+ */
+public final class QuantizationBenchmark {
+
+    private static final Logger logger = Logger.getLogger("QuantizationBenchmark");
+
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png", ".bmp", ".webp");
+
+    private QuantizationBenchmark() {
+    }
+
+    /**
+     * 读取标注目录，返回 (图片, 标注文本) 列表，没有同名 .txt 的图片被忽略
+     */
+    public static List<Pair<File, String>> loadSamples(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("标注目录不存在: " + dir);
+        }
+        Arrays.sort(files);
+        List<Pair<File, String>> samples = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            if (dot <= 0 || !IMAGE_EXTENSIONS.contains(name.substring(dot).toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            File label = new File(dir, name.substring(0, dot) + ".txt");
+            if (label.isFile()) {
+                samples.add(Pair.of(file, new String(Files.readAllBytes(label.toPath()), StandardCharsets.UTF_8)));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 依次用两组配置识别全部图片并对比
+     *
+     * @param baselineConfig  FP32 模型配置
+     * @param quantizedConfig 量化模型配置，通常为各模块设置了 useQuantized 的同一份配置
+     * @param samples         (图片, 标注文本) 列表
+     * @param rounds          每张图片的计时轮数，首轮用于预热不计入耗时
+     */
+    public static QuantizationReport compare(Context context, OcrConfig baselineConfig, OcrConfig quantizedConfig,
+                                             List<Pair<File, String>> samples, int rounds) throws Exception {
+        QuantizationReport.VariantStats baseline = measure(context, baselineConfig, samples, rounds);
+        QuantizationReport.VariantStats quantized = measure(context, quantizedConfig, samples, rounds);
+        QuantizationReport report = new QuantizationReport(baseline, quantized);
+        logger.info(report.toString());
+        return report;
+    }
+
+    private static QuantizationReport.VariantStats measure(Context context, OcrConfig config,
+                                                           List<Pair<File, String>> samples, int rounds) throws Exception {
+        int timedRounds = Math.max(1, rounds - 1);
+        System.gc();
+        long rssBefore = readRss();
+        double totalElapse = 0.0;
+        int editDistance = 0;
+        int labelChars = 0;
+        long rssAfter;
+        try (RapidOCR rapidOCR = RapidOCR.create(context, config)) {
+            for (Pair<File, String> sample : samples) {
+                String imagePath = sample.getLeft().getAbsolutePath();
+                // 首轮的结果用于计算准确率，耗时不计入
+                OcrResult result = rapidOCR.run(imagePath);
+                for (int i = 0; i < timedRounds; i++) {
+                    long start = System.nanoTime();
+                    rapidOCR.run(imagePath);
+                    totalElapse += (System.nanoTime() - start) / 1e9;
+                }
+                int[] expected = stripWhitespace(sample.getRight());
+                editDistance += editDistance(stripWhitespace(result.getStrRes()), expected);
+                labelChars += expected.length;
+            }
+            rssAfter = readRss();
+        }
+        double avgElapse = samples.isEmpty() ? 0.0 : totalElapse / (samples.size() * timedRounds);
+        return new QuantizationReport.VariantStats(samples.size(), avgElapse, rssAfter - rssBefore, editDistance, labelChars);
+    }
+
+    private static int[] stripWhitespace(String text) {
+        return text == null ? new int[0] : text.codePoints().filter(c -> !Character.isWhitespace(c)).toArray();
+    }
+
+    /**
+     * 按码点计算编辑距离
+     */
+    static int editDistance(int[] a, int[] b) {
+        int[] prev = new int[b.length + 1];
+        int[] curr = new int[b.length + 1];
+        for (int j = 0; j <= b.length; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            curr[0] = i;
+            for (int j = 1; j <= b.length; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return prev[b.length];
+    }
+
+    /**
+     * 读取进程常驻内存（字节），无法读取时返回 0
+     */
+    private static long readRss() {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    String[] parts = line.substring(6).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Failed to read VmRSS: " + e.getMessage());
+        }
+        return 0;
+    }
+}
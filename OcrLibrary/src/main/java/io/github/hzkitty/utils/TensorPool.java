@@ -0,0 +1,252 @@
+package io.github.hzkitty.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+
+/**
+ * 按张量形状缓存的输入/输出内存池，归属于单个 OrtInferSession
+ * <p>
+ * 输入、输出各使用一块可增长的 direct buffer，所有形状共用同一块内存；FP16 输入的模型使用 ShortBuffer 作为输入内存；
+ * 每种输入形状缓存其对应的输入 OnnxTensor、输出形状以及固定 (pinned) 的输出 OnnxTensor，
+ * 稳态下每次推理不再分配新的张量和 buffer。
+ * <p>
+ * 非线程安全：同一时刻只能有一个调用方使用该池（由持有会话的一方保证）。
+ */
+class TensorPool implements AutoCloseable {
+
+    // 最多缓存的形状数量，超出后按最近最少使用淘汰
+    private static final int MAX_CACHED_SHAPES = 32;
+
+    private final OrtEnvironment env;
+
+    private FloatBuffer inputRegion;
+    // FP16 张量只能由 ByteBuffer 创建，ShortBuffer 为其视图
+    private ByteBuffer halfInputBytes;
+    private ShortBuffer halfInputRegion;
+    private FloatBuffer outputRegion;
+
+    private final Map<String, ShapeEntry> entries = new LinkedHashMap<String, ShapeEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ShapeEntry> eldest) {
+            if (size() > MAX_CACHED_SHAPES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    TensorPool(OrtEnvironment env) {
+        this.env = env;
+    }
+
+    /**
+     * 获取指定形状的输入 buffer，position 为 0、limit 为元素个数
+     */
+    FloatBuffer acquireInput(long[] shape) {
+        int size = elementCount(shape);
+        if (inputRegion == null || inputRegion.capacity() < size) {
+            inputRegion = OrtInferSession.ensureCapacity(null, size);
+            // 底层内存已更换，之前创建的输入张量全部失效
+            for (ShapeEntry entry : entries.values()) {
+                entry.closeInput();
+            }
+        }
+        inputRegion.clear();
+        inputRegion.limit(size);
+        return inputRegion;
+    }
+
+    /**
+     * 获取指定形状的 FP16 输入 buffer，position 为 0、limit 为元素个数
+     */
+    ShortBuffer acquireHalfInput(long[] shape) {
+        int size = elementCount(shape);
+        if (halfInputRegion == null || halfInputRegion.capacity() < size) {
+            halfInputBytes = ByteBuffer.allocateDirect(size * Short.BYTES).order(ByteOrder.nativeOrder());
+            halfInputRegion = halfInputBytes.asShortBuffer();
+            for (ShapeEntry entry : entries.values()) {
+                entry.closeInput();
+            }
+        }
+        halfInputRegion.clear();
+        halfInputRegion.limit(size);
+        return halfInputRegion;
+    }
+
+    /**
+     * 判断 buffer 是否为池中的输入 buffer
+     */
+    boolean isPooledInput(FloatBuffer buffer) {
+        return buffer != null && buffer == inputRegion;
+    }
+
+    /**
+     * 判断 buffer 是否为池中的 FP16 输入 buffer
+     */
+    boolean isPooledHalfInput(ShortBuffer buffer) {
+        return buffer != null && buffer == halfInputRegion;
+    }
+
+    /**
+     * 获取指定形状对应的输入张量，张量直接引用池中的输入内存
+     */
+    OnnxTensor inputTensor(long[] shape) throws OrtException {
+        ShapeEntry entry = entry(shape);
+        if (entry.inputTensor == null) {
+            FloatBuffer view = inputRegion.duplicate();
+            view.clear();
+            view.limit(elementCount(shape));
+            entry.inputTensor = OnnxTensor.createTensor(env, view, shape);
+        }
+        return entry.inputTensor;
+    }
+
+    /**
+     * 获取指定形状对应的 FP16 输入张量，张量直接引用池中的 FP16 输入内存
+     * 同一会话只会使用 float 或 FP16 其中一种输入，两者共用缓存项中的输入张量
+     */
+    OnnxTensor halfInputTensor(long[] shape) throws OrtException {
+        ShapeEntry entry = entry(shape);
+        if (entry.inputTensor == null) {
+            ByteBuffer view = halfInputBytes.duplicate().order(ByteOrder.nativeOrder());
+            view.clear();
+            view.limit(elementCount(shape) * Short.BYTES);
+            entry.inputTensor = OnnxTensor.createTensor(env, view, shape, OnnxJavaType.FLOAT16);
+        }
+        return entry.inputTensor;
+    }
+
+    /**
+     * 获取该输入形状已知的输出形状，首次运行前为 null
+     */
+    long[] outputShape(long[] inputShape) {
+        return entry(inputShape).outputShape;
+    }
+
+    /**
+     * 获取固定的输出张量，推理结果直接写入池中的输出内存
+     */
+    OnnxTensor outputTensor(long[] inputShape) throws OrtException {
+        ShapeEntry entry = entry(inputShape);
+        int size = elementCount(entry.outputShape);
+        ensureOutputCapacity(size);
+        if (entry.outputTensor == null) {
+            FloatBuffer view = outputRegion.duplicate();
+            view.clear();
+            view.limit(size);
+            entry.outputTensor = OnnxTensor.createTensor(env, view, entry.outputShape);
+        }
+        return entry.outputTensor;
+    }
+
+    /**
+     * 首次运行某个形状后，记录输出形状并把结果拷入池中的输出内存
+     */
+    FloatBuffer storeOutput(long[] inputShape, long[] outputShape, FloatBuffer data) {
+        entry(inputShape).outputShape = outputShape;
+        ensureOutputCapacity(elementCount(outputShape));
+        outputRegion.clear();
+        outputRegion.put(data);
+        return outputView(outputShape);
+    }
+
+    /**
+     * 同 {@link #storeOutput(long[], long[], FloatBuffer)}，把 FP16 结果逐个转换写入池中的输出内存
+     */
+    FloatBuffer storeHalfOutput(long[] inputShape, long[] outputShape, ShortBuffer data) {
+        entry(inputShape).outputShape = outputShape;
+        ensureOutputCapacity(elementCount(outputShape));
+        outputRegion.clear();
+        Float16.toFloat(data, outputRegion);
+        return outputView(outputShape);
+    }
+
+    /**
+     * 池中输出内存的只读视图，内容在下一次推理前有效
+     */
+    FloatBuffer outputView(long[] outputShape) {
+        outputRegion.clear();
+        outputRegion.limit(elementCount(outputShape));
+        return outputRegion;
+    }
+
+    private void ensureOutputCapacity(int size) {
+        if (outputRegion == null || outputRegion.capacity() < size) {
+            outputRegion = OrtInferSession.ensureCapacity(null, size);
+            for (ShapeEntry entry : entries.values()) {
+                entry.closeOutput();
+            }
+        }
+    }
+
+    private ShapeEntry entry(long[] shape) {
+        String key = Arrays.toString(shape);
+        ShapeEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = new ShapeEntry();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    static int elementCount(long[] shape) {
+        long count = 1;
+        for (long dim : shape) {
+            count *= dim;
+        }
+        return (int) count;
+    }
+
+    @Override
+    public void close() {
+        Iterator<ShapeEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            iterator.next().close();
+            iterator.remove();
+        }
+        inputRegion = null;
+        halfInputBytes = null;
+        halfInputRegion = null;
+        outputRegion = null;
+    }
+
+    /**
+     * 单个输入形状的缓存项
+     */
+    private static class ShapeEntry {
+        OnnxTensor inputTensor;
+        OnnxTensor outputTensor;
+        long[] outputShape;
+
+        void closeInput() {
+            if (inputTensor != null) {
+                inputTensor.close();
+                inputTensor = null;
+            }
+        }
+
+        void closeOutput() {
+            if (outputTensor != null) {
+                outputTensor.close();
+                outputTensor = null;
+            }
+        }
+
+        void close() {
+            closeInput();
+            closeOutput();
+        }
+    }
+}